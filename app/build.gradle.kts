@@ -48,6 +48,7 @@ android {
 
 dependencies {
     implementation(project(":texteditor"))
+    implementation(project(":storage"))
 
     implementation("com.google.code.gson:gson:2.10.1")
     implementation("androidx.room:room-runtime:2.5.0")
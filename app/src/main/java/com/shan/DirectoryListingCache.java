@@ -0,0 +1,148 @@
+package com.shan;
+
+import com.shan.texteditor.SaveFiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted listings of recently visited folders. Once a folder has been listed, file
+ * observer events are applied to the cached entries one name at a time instead of listing
+ * and stat-ing the whole folder again. Folders that are not cached yet are read from the
+ * {@link EntrySource} when it can provide them, otherwise from the file system.
+ * <p>
+ * Not thread-safe: NotesActivity only uses it from its file executor.
+ */
+class DirectoryListingCache {
+
+    /**
+     * Computes the number shown for a folder entry
+     */
+    interface FolderSizer {
+        long sizeOf(File folder);
+    }
+
+    /**
+     * Lists a folder without touching the file system, e.g. from the note catalog
+     */
+    interface EntrySource {
+        /** @return the folder's entries in any order, or null if they are not available */
+        List<NotesActivity.FileItem> list(File dir);
+    }
+
+    // Folders first, then case-insensitive by name
+    static final Comparator<NotesActivity.FileItem> ORDER = (a, b) -> {
+        if (a.isFolder != b.isFolder) {
+            return a.isFolder ? -1 : 1;
+        }
+        int result = a.name.compareToIgnoreCase(b.name);
+        return result != 0 ? result : a.name.compareTo(b.name);
+    };
+
+    private final FolderSizer folderSizer;
+    private final EntrySource entrySource;
+    private final Map<String, Listing> listings = new HashMap<>();
+
+    DirectoryListingCache(FolderSizer folderSizer, EntrySource entrySource) {
+        this.folderSizer = folderSizer;
+        this.entrySource = entrySource;
+    }
+
+    /**
+     * @return a snapshot of the folder's entries, listing the folder if it is not cached
+     */
+    List<NotesActivity.FileItem> get(File dir) {
+        Listing listing = listings.get(dir.getAbsolutePath());
+        if (listing == null) {
+            listing = scan(dir, entrySource.list(dir));
+            listings.put(dir.getAbsolutePath(), listing);
+        }
+        return new ArrayList<>(listing.sorted);
+    }
+
+    /**
+     * Lists the folder again from the file system, e.g. after an explicit refresh.
+     */
+    List<NotesActivity.FileItem> rescan(File dir) {
+        Listing listing = scan(dir, null);
+        listings.put(dir.getAbsolutePath(), listing);
+        return new ArrayList<>(listing.sorted);
+    }
+
+    /**
+     * Re-reads one entry of a cached folder after it was created, changed or removed.
+     *
+     * @return whether the cached listing changed; false if the folder is not cached
+     */
+    boolean apply(File dir, String name) {
+        Listing listing = listings.get(dir.getAbsolutePath());
+        if (listing == null) {
+            return false;
+        }
+
+        NotesActivity.FileItem old = listing.byName.get(name);
+        File file = new File(dir, name);
+        NotesActivity.FileItem updated = file.exists() ? stat(file) : null;
+        if (old != null && updated != null && old.sameContents(updated)) {
+            return false;
+        }
+
+        if (old != null) {
+            listing.byName.remove(name);
+            int index = Collections.binarySearch(listing.sorted, old, ORDER);
+            if (index >= 0) {
+                listing.sorted.remove(index);
+            }
+        }
+        if (updated != null) {
+            listing.byName.put(name, updated);
+            int index = Collections.binarySearch(listing.sorted, updated, ORDER);
+            listing.sorted.add(index < 0 ? -index - 1 : index, updated);
+        }
+        return old != null || updated != null;
+    }
+
+    /**
+     * Forgets a folder whose changes are no longer being observed.
+     */
+    void evict(File dir) {
+        listings.remove(dir.getAbsolutePath());
+    }
+
+    private Listing scan(File dir, List<NotesActivity.FileItem> entries) {
+        Listing listing = new Listing();
+        if (entries == null) {
+            entries = new ArrayList<>();
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!SaveFiles.isSaveFile(file.getName())) {
+                        entries.add(stat(file));
+                    }
+                }
+            }
+        }
+        for (NotesActivity.FileItem item : entries) {
+            listing.byName.put(item.name, item);
+            listing.sorted.add(item);
+        }
+        Collections.sort(listing.sorted, ORDER);
+        return listing;
+    }
+
+    private NotesActivity.FileItem stat(File file) {
+        boolean isFolder = file.isDirectory();
+        long size = isFolder ? folderSizer.sizeOf(file) : file.length();
+        return new NotesActivity.FileItem(file.getName(), file, isFolder, size, file.lastModified());
+    }
+
+    private static class Listing {
+        final Map<String, NotesActivity.FileItem> byName = new HashMap<>();
+        final List<NotesActivity.FileItem> sorted = new ArrayList<>();
+    }
+}
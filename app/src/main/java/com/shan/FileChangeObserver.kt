@@ -1,7 +1,6 @@
 package com.shan
 
 import android.os.FileObserver
-import android.util.Log
 import java.io.File
 
 class FileChangeObserver(
@@ -21,7 +20,6 @@ class FileChangeObserver(
                 )
 
         if (relevantEvents != 0) {
-            Log.d("FileChangeObserver", "Event: $event, Path: $path")
             onEvent(event, path)
         }
     }
@@ -0,0 +1,206 @@
+package com.shan;
+
+import com.shan.texteditor.SaveFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Recursive file counts, byte totals and newest modification time per folder, persisted
+ * between launches so folder rows do not have to walk their whole subtree.
+ * <p>
+ * An entry is trusted while its folder's own modification time is unchanged; otherwise only
+ * that level is listed again and the subfolders come from the index. Changes further down,
+ * which do not touch the folder's modification time, are reported through
+ * {@link #onChanged(File)}, which drops the entries of every folder above the change. That
+ * includes changes made while the app was not running, which the note catalog's launch-time
+ * pass finds.
+ * <p>
+ * Not thread-safe: NotesActivity only uses it from its file executor.
+ */
+class FolderIndex {
+
+    private static final int MAGIC = 0x46494458; // "FIDX"
+    private static final int VERSION = 1;
+
+    static class Aggregate {
+        final long folderModified;
+        final long fileCount;
+        final long totalBytes;
+        final long newestModified;
+
+        Aggregate(long folderModified, long fileCount, long totalBytes, long newestModified) {
+            this.folderModified = folderModified;
+            this.fileCount = fileCount;
+            this.totalBytes = totalBytes;
+            this.newestModified = newestModified;
+        }
+    }
+
+    private final File indexFile;
+    private final Map<String, Aggregate> entries = new HashMap<>();
+    private boolean loaded;
+    private boolean changed;
+
+    FolderIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * @return the aggregate of the folder, recomputing only the levels that are out of date
+     */
+    Aggregate get(File folder) {
+        load();
+        String path = folder.getAbsolutePath();
+        Aggregate cached = entries.get(path);
+        long folderModified = folder.lastModified();
+        if (cached != null && cached.folderModified == folderModified) {
+            return cached;
+        }
+
+        long fileCount = 0;
+        long totalBytes = 0;
+        long newest = folderModified;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (SaveFiles.isSaveFile(file.getName())) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    Aggregate child = get(file);
+                    fileCount += child.fileCount;
+                    totalBytes += child.totalBytes;
+                    newest = Math.max(newest, child.newestModified);
+                } else {
+                    fileCount++;
+                    totalBytes += file.length();
+                    newest = Math.max(newest, file.lastModified());
+                }
+            }
+        }
+
+        Aggregate aggregate = new Aggregate(folderModified, fileCount, totalBytes, newest);
+        entries.put(path, aggregate);
+        changed = true;
+        return aggregate;
+    }
+
+    /**
+     * Records that {@code file} was created, modified, moved or deleted. The folders above
+     * it are recomputed on their next lookup; a removed folder is forgotten with its subtree.
+     */
+    void onChanged(File file) {
+        load();
+        if (!file.isDirectory() && entries.containsKey(file.getAbsolutePath())) {
+            invalidateTree(file);
+        }
+        for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+            if (entries.remove(parent.getAbsolutePath()) != null) {
+                changed = true;
+            }
+        }
+    }
+
+    /**
+     * Forgets the folder and everything below it, e.g. on an explicit refresh.
+     */
+    void invalidateTree(File folder) {
+        load();
+        String path = folder.getAbsolutePath();
+        String prefix = path + File.separator;
+        Iterator<String> paths = entries.keySet().iterator();
+        while (paths.hasNext()) {
+            String entry = paths.next();
+            if (entry.equals(path) || entry.startsWith(prefix)) {
+                paths.remove();
+                changed = true;
+            }
+        }
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!indexFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                entries.put(path, new Aggregate(in.readLong(), in.readLong(), in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // A damaged index is rebuilt on demand
+            e.printStackTrace();
+            entries.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index if anything changed since it was loaded or last saved.
+     */
+    void save() {
+        if (!changed) {
+            return;
+        }
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Aggregate> entry : entries.entrySet()) {
+                Aggregate aggregate = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(aggregate.folderModified);
+                out.writeLong(aggregate.fileCount);
+                out.writeLong(aggregate.totalBytes);
+                out.writeLong(aggregate.newestModified);
+            }
+            out.close();
+            out = null;
+            if (temp.renameTo(indexFile)) {
+                changed = false;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.shan;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.shan.storage.PagedFileReader;
+
+/**
+ * One row of 16 bytes per item: offset, hex and printable ASCII. Rows whose page has not been
+ * read yet show only their offset until {@link PagedFileReader} delivers the page.
+ */
+class HexRowAdapter extends RecyclerView.Adapter<HexRowAdapter.ViewHolder> {
+
+    static final int ROW_BYTES = 16;
+    private static final int ROWS_PER_PAGE = PagedFileReader.PAGE_BYTES / ROW_BYTES;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final PagedFileReader reader;
+    private final int offsetDigits;
+
+    // Reused by formatRow on the main thread
+    private final char[] rowChars;
+
+    HexRowAdapter(PagedFileReader reader) {
+        this.reader = reader;
+        this.offsetDigits = reader.getSize() > 0xFFFFFFFFL ? 12 : 8;
+        this.rowChars = new char[offsetDigits + 2 + ROW_BYTES * 3 + 1 + ROW_BYTES + 1];
+    }
+
+    @Override
+    public int getItemCount() {
+        long rows = (reader.getSize() + ROW_BYTES - 1) / ROW_BYTES;
+        return (int) Math.min(Integer.MAX_VALUE, rows);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_hex_row, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.rowText.setText(formatRow(position));
+    }
+
+    /**
+     * The row as shown, or just its offset if its page is still being read.
+     */
+    String formatRow(int row) {
+        int page = row / ROWS_PER_PAGE;
+        byte[] bytes = reader.getCachedPage(page);
+        long offset = (long) row * ROW_BYTES;
+        if (bytes == null) {
+            reader.loadPage(page, loaded ->
+                    notifyItemRangeChanged(loaded * ROWS_PER_PAGE,
+                            Math.min(ROWS_PER_PAGE, getItemCount() - loaded * ROWS_PER_PAGE)));
+            int length = appendOffset(offset, 0);
+            return new String(rowChars, 0, length);
+        }
+
+        int from = (row % ROWS_PER_PAGE) * ROW_BYTES;
+        int count = Math.min(ROW_BYTES, bytes.length - from);
+        int length = appendOffset(offset, 0);
+        rowChars[length++] = ' ';
+        rowChars[length++] = ' ';
+        for (int i = 0; i < ROW_BYTES; i++) {
+            if (i < count) {
+                int b = bytes[from + i] & 0xFF;
+                rowChars[length++] = HEX_DIGITS[b >>> 4];
+                rowChars[length++] = HEX_DIGITS[b & 0x0F];
+            } else {
+                rowChars[length++] = ' ';
+                rowChars[length++] = ' ';
+            }
+            rowChars[length++] = ' ';
+        }
+        rowChars[length++] = '|';
+        for (int i = 0; i < count; i++) {
+            int b = bytes[from + i] & 0xFF;
+            rowChars[length++] = b >= 32 && b <= 126 ? (char) b : '.';
+        }
+        rowChars[length++] = '|';
+        return new String(rowChars, 0, length);
+    }
+
+    private int appendOffset(long offset, int start) {
+        for (int i = offsetDigits - 1; i >= 0; i--) {
+            rowChars[start + i] = HEX_DIGITS[(int) (offset & 0x0F)];
+            offset >>>= 4;
+        }
+        return start + offsetDigits;
+    }
+
+    /**
+     * Appends bytes as space-separated hex pairs
+     */
+    static void appendHex(StringBuilder out, byte[] bytes, int count) {
+        for (int i = 0; i < count; i++) {
+            int b = bytes[i] & 0xFF;
+            out.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]).append(' ');
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView rowText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            rowText = itemView.findViewById(R.id.rowText);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import android.widget.Button;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.shan.texteditor.TextEditorActivity;
+import com.shan.texteditor.TextMateWarmup;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -15,6 +16,9 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Parse the editor grammars in the background before the first note is opened
+        TextMateWarmup.prewarm(this);
+
         Button btnNotes = findViewById(R.id.btnNotes);
         Button btnEditor = findViewById(R.id.btnEditor);
 
@@ -0,0 +1,347 @@
+package com.shan;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.shan.storage.ChunkStream;
+import com.shan.storage.HashEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Room catalog of everything under the notes root, kept in sync by a reconciler on its own
+ * executor. A file is only re-read (hashed, its title extracted) when its size or
+ * modification time differs from its catalog entry, and only goes back into the full-text
+ * index when its content hash changed as well. Tree walks run on a {@link TreeCrawler}, so
+ * a cold pass over a large tree stats files on all cores while a few reader threads hash and
+ * parse the changed ones.
+ * <p>
+ * {@link #reconcileAll} runs once per launch to pick up changes made while the app was not
+ * running; afterwards the file observers report single paths through {@link #reconcile(File)}.
+ */
+class NoteCatalog {
+
+    interface ReconcileListener {
+        /**
+         * Called on the reconciler thread after a full pass with every file and folder it
+         * found added, modified or removed since the last pass.
+         */
+        void onReconciled(List<File> changed);
+    }
+
+    private static final String TAG = "NoteCatalog";
+
+    // Upserts per transaction during a full pass
+    private static final int BATCH_SIZE = 200;
+
+    // SQLite host parameter limit for "IN (...)" deletes
+    private static final int DELETE_CHUNK = 500;
+
+    // Indexed text held in memory before a batch is written
+    private static final int BATCH_CHARS = 4 * 1024 * 1024;
+
+    // Concurrent file reads during a crawl
+    private static final int IO_CONCURRENCY = 4;
+
+    // Changed entries waiting to be written; bounds the text held in memory
+    private static final int QUEUE_SIZE = 64;
+
+    // Only the head of a note is indexed and scanned for its title
+    private static final int INDEX_BYTES = 1024 * 1024;
+
+    // Shared by the reader threads; pools one read buffer per concurrent read
+    private static final ChunkStream CHUNKS = new ChunkStream();
+
+    private static final Pattern HEADING = Pattern.compile("^ {0,3}#{1,6}\\s+(.*?)[\\s#]*$");
+
+    private final NotesDatabase database;
+    private final NoteDao dao;
+    private final File root;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final TreeCrawler crawler =
+            new TreeCrawler(Runtime.getRuntime().availableProcessors(), IO_CONCURRENCY);
+
+    // Set once a full pass has completed in this process
+    private volatile boolean synced;
+    private volatile TreeCrawler.Stats crawlStats;
+
+    NoteCatalog(Context context, File root) {
+        this.database = NotesDatabase.getInstance(context);
+        this.dao = database.noteDao();
+        this.root = root;
+    }
+
+    NoteDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Whether the catalog reflects the file system, give or take pending observer events.
+     */
+    boolean isSynced() {
+        return synced;
+    }
+
+    void reconcileAll(ReconcileListener listener) {
+        executor.execute(() -> {
+            List<File> changed = reconcileTree(root);
+            synced = true;
+            listener.onReconciled(changed);
+        });
+    }
+
+    /**
+     * Brings the entry for {@code file} (and its subtree, for a folder) up to date.
+     */
+    void reconcile(File file) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            if (!file.exists()) {
+                String path = file.getAbsolutePath();
+                String prefix = path + File.separator;
+                database.runInTransaction(() -> {
+                    // Text rows are found through the notes rows, so they go first
+                    dao.deleteTextTree(path, prefix);
+                    dao.deleteTree(path, prefix);
+                });
+            } else if (file.isDirectory()) {
+                reconcileTree(file);
+            } else {
+                NoteEntity current = dao.find(file.getAbsolutePath());
+                if (current == null || current.size != file.length()
+                        || current.modified != file.lastModified()) {
+                    NoteEntity note = read(file);
+                    note.reindex = current == null || !Objects.equals(current.hash, note.hash);
+                    List<NoteEntity> update = new ArrayList<>();
+                    update.add(note);
+                    flush(update);
+                }
+            }
+        });
+    }
+
+    /**
+     * Progress of the running tree walk, or the totals of the last one; null before the first.
+     */
+    TreeCrawler.Stats getCrawlStats() {
+        return crawlStats;
+    }
+
+    /**
+     * Lets queued reconciliation finish, then stops the reconciler threads.
+     */
+    void shutdown() {
+        executor.execute(crawler::shutdown);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the files and folders under {@code top} whose entries were added, updated or removed
+     */
+    private List<File> reconcileTree(File top) {
+        Map<String, NoteStamp> known = new ConcurrentHashMap<>();
+        for (NoteStamp stamp : dao.stampsUnder(top.getAbsolutePath() + File.separator)) {
+            known.put(stamp.path, stamp);
+        }
+
+        List<File> changedFiles = new ArrayList<>();
+        List<NoteEntity> batch = new ArrayList<>();
+        long batchChars = 0;
+        if (!top.equals(root)) {
+            // The folder's own row is not under its prefix
+            batch.add(read(top));
+        }
+
+        // Crawler threads stat every entry and reader threads read the changed ones; this
+        // thread writes them in batches
+        Map<String, NoteStamp> stale = new ConcurrentHashMap<>();
+        BlockingQueue<NoteEntity> changed = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        TreeCrawler.Crawl crawl = crawler.start(top, new TreeCrawler.Visitor() {
+            @Override
+            public boolean visit(File file, boolean isFolder) {
+                NoteStamp stamp = known.remove(file.getAbsolutePath());
+                long size = isFolder ? 0 : file.length();
+                if (stamp != null && stamp.size == size && stamp.modified == file.lastModified()) {
+                    return false;
+                }
+                if (stamp != null) {
+                    stale.put(stamp.path, stamp);
+                }
+                return true;
+            }
+
+            @Override
+            public void read(File file, boolean isFolder) throws InterruptedException {
+                NoteStamp stamp = stale.remove(file.getAbsolutePath());
+                NoteEntity note = NoteCatalog.read(file);
+                note.reindex = stamp == null || !Objects.equals(stamp.hash, note.hash);
+                changed.put(note);
+            }
+        });
+        crawlStats = crawl.getStats();
+
+        try {
+            while (true) {
+                NoteEntity note = changed.poll(100, TimeUnit.MILLISECONDS);
+                if (note == null) {
+                    // Everything is queued before the crawl completes
+                    if (crawl.isDone() && changed.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(note);
+                changedFiles.add(new File(note.path));
+                batchChars += note.body != null ? note.body.length() : 0;
+                if (batch.size() >= BATCH_SIZE || batchChars >= BATCH_CHARS) {
+                    flush(batch);
+                    batchChars = 0;
+                }
+            }
+            flush(batch);
+            crawl.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            crawl.cancel();
+            return changedFiles;
+        } catch (RuntimeException e) {
+            // Readers waiting on the full queue would otherwise never return
+            crawl.cancel();
+            throw e;
+        }
+        Log.i(TAG, "Reconciled " + top + ": " + crawl.getStats());
+
+        // Whatever was not seen on disk is gone
+        List<String> removed = new ArrayList<>(known.keySet());
+        for (int i = 0; i < removed.size(); i += DELETE_CHUNK) {
+            List<String> chunk = removed.subList(i, Math.min(removed.size(), i + DELETE_CHUNK));
+            database.runInTransaction(() -> {
+                dao.deleteTexts(chunk);
+                dao.delete(chunk);
+            });
+        }
+        for (String path : removed) {
+            changedFiles.add(new File(path));
+        }
+        return changedFiles;
+    }
+
+    private void flush(List<NoteEntity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<NoteEntity> notes = new ArrayList<>(batch);
+        database.runInTransaction(() -> {
+            dao.upsert(notes);
+            for (NoteEntity note : notes) {
+                if (note.reindex && note.body != null) {
+                    dao.deleteText(note.path);
+                    dao.insertText(note.path, note.title, note.body);
+                }
+            }
+        });
+        batch.clear();
+    }
+
+    private static NoteEntity read(File file) {
+        NoteEntity note = new NoteEntity();
+        note.path = file.getAbsolutePath();
+        note.parent = file.getParent() != null ? file.getParent() : "";
+        note.name = file.getName();
+        note.isFolder = file.isDirectory();
+        note.size = sizeOf(file);
+        note.modified = file.lastModified();
+        note.title = note.name;
+        if (note.isFolder) {
+            return note;
+        }
+
+        try {
+            boolean text = isTextNote(note.name);
+            byte[] head = hashAndReadHead(file, text ? INDEX_BYTES : 0, note);
+            if (text) {
+                note.body = new String(head, StandardCharsets.UTF_8);
+                parse(note.body, note);
+            }
+        } catch (IOException e) {
+            // Unreadable right now; the entry is retried when the file changes again
+            e.printStackTrace();
+        }
+        return note;
+    }
+
+    // Folders are recorded with size 0; their length is file system specific
+    private static long sizeOf(File file) {
+        return file.isDirectory() ? 0 : file.length();
+    }
+
+    private static byte[] hashAndReadHead(File file, int headBytes, NoteEntity note) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        CHUNKS.read(file, (chunk, position) -> {
+            if (head.size() < headBytes) {
+                byte[] bytes = new byte[Math.min(chunk.remaining(), headBytes - head.size())];
+                chunk.duplicate().get(bytes);
+                head.write(bytes, 0, bytes.length);
+            }
+            digest.update(chunk);
+        });
+
+        note.hash = HashEngine.toHex(digest.digest());
+        return head.toByteArray();
+    }
+
+    private static boolean isTextNote(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".md") || lower.endsWith(".markdown") || lower.endsWith(".txt");
+    }
+
+    private static void parse(String text, NoteEntity note) {
+        String firstLine = null;
+        String heading = null;
+        for (String line : text.split("\r?\n|\r")) {
+            if (heading == null) {
+                Matcher matcher = HEADING.matcher(line);
+                if (matcher.matches() && !matcher.group(1).isEmpty()) {
+                    // The heading wins over the first line, nothing below it matters
+                    heading = matcher.group(1);
+                    break;
+                }
+            }
+            if (firstLine == null && !line.trim().isEmpty()) {
+                firstLine = line.trim();
+            }
+        }
+
+        if (heading != null) {
+            note.title = heading;
+        } else if (firstLine != null) {
+            note.title = firstLine.length() > 80 ? firstLine.substring(0, 80) : firstLine;
+        }
+    }
+}
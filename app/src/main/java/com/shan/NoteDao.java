@@ -0,0 +1,59 @@
+package com.shan;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import java.util.List;
+
+@Dao
+public interface NoteDao {
+
+    @Query("SELECT * FROM notes WHERE parent = :parent ORDER BY isFolder DESC, name COLLATE NOCASE")
+    List<NoteEntity> listChildren(String parent);
+
+    @Query("SELECT * FROM notes WHERE path = :path")
+    NoteEntity find(String path);
+
+    /** Stamps of every entry whose path starts with {@code prefix} */
+    @Query("SELECT path, size, modified, hash FROM notes WHERE substr(path, 1, length(:prefix)) = :prefix")
+    List<NoteStamp> stampsUnder(String prefix);
+
+    /** Updates existing rows in place, so their rowids (and the text rows keyed to them) stay */
+    @Upsert
+    void upsert(List<NoteEntity> notes);
+
+    @Query("DELETE FROM notes WHERE path IN (:paths)")
+    void delete(List<String> paths);
+
+    /** Deletes the entry and, for a folder, everything below it */
+    @Query("DELETE FROM notes WHERE path = :path OR substr(path, 1, length(:prefix)) = :prefix")
+    void deleteTree(String path, String prefix);
+
+    // ==================== FULL-TEXT INDEX ====================
+    // A note's text row has the rowid of its notes row, so it is found without scanning the
+    // full-text table. The notes row must exist when the text is written or deleted.
+
+    @Query("INSERT INTO note_text (rowid, path, title, body) " +
+            "SELECT rowid, path, :title, :body FROM notes WHERE path = :path")
+    void insertText(String path, String title, String body);
+
+    @Query("DELETE FROM note_text WHERE rowid = (SELECT rowid FROM notes WHERE path = :path)")
+    void deleteText(String path);
+
+    @Query("DELETE FROM note_text WHERE rowid IN (SELECT rowid FROM notes WHERE path IN (:paths))")
+    void deleteTexts(List<String> paths);
+
+    @Query("DELETE FROM note_text WHERE rowid IN (SELECT rowid FROM notes " +
+            "WHERE path = :path OR substr(path, 1, length(:prefix)) = :prefix)")
+    void deleteTextTree(String path, String prefix);
+
+    /** Every match with the statistics needed to rank it; cheap compared to snippets */
+    @Query("SELECT rowid, matchinfo(note_text, 'pcnalx') AS info FROM note_text WHERE note_text MATCH :query")
+    List<SearchMatch> match(String query);
+
+    /** Titles and snippets of the given matches, in no particular order */
+    @Query("SELECT rowid, path, title, snippet(note_text, '[', ']', '…', -1, 12) AS snippet " +
+            "FROM note_text WHERE note_text MATCH :query AND rowid IN (:rowIds)")
+    List<SearchHit> hits(String query, List<Long> rowIds);
+}
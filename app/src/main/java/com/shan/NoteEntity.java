@@ -0,0 +1,42 @@
+package com.shan;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One file or folder under Documents/Shan as recorded by the {@link NoteCatalog}.
+ */
+@Entity(tableName = "notes", indices = {@Index("parent")})
+public class NoteEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String path = "";
+
+    @NonNull
+    public String parent = "";
+
+    @NonNull
+    public String name = "";
+
+    public boolean isFolder;
+    public long size;
+    public long modified;
+
+    // SHA-256 of the content, null for folders
+    public String hash;
+
+    // First heading (or line) of a text note, otherwise the file name
+    public String title;
+
+    // Text to put in the full-text index, null for notes that are not indexed
+    @Ignore
+    public String body;
+
+    // Whether the content changed since the note was last indexed
+    @Ignore
+    public boolean reindex;
+}
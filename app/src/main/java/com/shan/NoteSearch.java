@@ -0,0 +1,170 @@
+package com.shan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text search over the note index.
+ * <p>
+ * Plain words match as prefixes ({@code mark} finds "markdown") and quoted text matches as a
+ * phrase. Matches are ranked with BM25 computed from FTS4's matchinfo; only the best ones
+ * get a snippet, since snippets are by far the most expensive part of the query.
+ */
+class NoteSearch {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Weight per note_text column: path (not indexed), title, body
+    private static final double[] COLUMN_WEIGHTS = {0, 3, 1};
+
+    private final NoteDao dao;
+
+    NoteSearch(NoteDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the best matches, best first; empty if the input has nothing to search for
+     */
+    List<SearchHit> search(String input) {
+        return search(input, DEFAULT_LIMIT);
+    }
+
+    List<SearchHit> search(String input, int limit) {
+        String query = buildQuery(input);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+
+        List<SearchMatch> matches = dao.match(query);
+        Map<Long, Double> scores = new HashMap<>(matches.size() * 2);
+        for (SearchMatch match : matches) {
+            scores.put(match.rowid, score(match.info));
+        }
+        Collections.sort(matches, (a, b) -> Double.compare(scores.get(b.rowid), scores.get(a.rowid)));
+
+        List<Long> best = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            best.add(matches.get(i).rowid);
+        }
+        if (best.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<SearchHit> hits = dao.hits(query, best);
+        Collections.sort(hits, (a, b) -> Double.compare(scores.get(b.rowid), scores.get(a.rowid)));
+        return hits;
+    }
+
+    /**
+     * Turns user input into an FTS4 MATCH expression: quoted parts become phrases, other words
+     * become prefix terms. Characters with a meaning in the query syntax are dropped.
+     *
+     * @return the expression, or null if nothing searchable is left
+     */
+    static String buildQuery(String input) {
+        StringBuilder query = new StringBuilder();
+        String[] parts = input.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            // Odd parts were between quotes (an unclosed quote still starts a phrase)
+            boolean phrase = i % 2 == 1;
+            List<String> words = words(parts[i]);
+            if (words.isEmpty()) {
+                continue;
+            }
+            if (phrase) {
+                appendTerm(query, "\"" + join(words) + "\"");
+            } else {
+                for (String word : words) {
+                    appendTerm(query, word + "*");
+                }
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                String term = word.toString();
+                // Bare operators would change the meaning of the query
+                String upper = term.toUpperCase(Locale.ROOT);
+                if (!upper.equals("AND") && !upper.equals("OR") && !upper.equals("NOT") && !upper.equals("NEAR")) {
+                    words.add(term);
+                }
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static String join(List<String> words) {
+        StringBuilder joined = new StringBuilder();
+        for (String word : words) {
+            if (joined.length() > 0) {
+                joined.append(' ');
+            }
+            joined.append(word);
+        }
+        return joined.toString();
+    }
+
+    private static void appendTerm(StringBuilder query, String term) {
+        if (query.length() > 0) {
+            query.append(' ');
+        }
+        query.append(term);
+    }
+
+    /**
+     * BM25 from matchinfo('pcnalx'): phrase count, column count, row count, average tokens per
+     * column, tokens per column of this row, then hits / total hits / matching rows for every
+     * phrase and column.
+     */
+    static double score(byte[] info) {
+        ByteBuffer buffer = ByteBuffer.wrap(info).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        long rows = buffer.getInt(8) & 0xffffffffL;
+        int averageStart = 3;
+        int lengthStart = averageStart + columns;
+        int hitsStart = lengthStart + columns;
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns && c < COLUMN_WEIGHTS.length; c++) {
+                if (COLUMN_WEIGHTS[c] == 0) {
+                    continue;
+                }
+                int hit = hitsStart + 3 * (p * columns + c);
+                double termFrequency = buffer.getInt(hit * 4);
+                if (termFrequency == 0) {
+                    continue;
+                }
+                double matchingRows = buffer.getInt((hit + 2) * 4);
+                double averageLength = Math.max(1, buffer.getInt((averageStart + c) * 4));
+                double length = buffer.getInt((lengthStart + c) * 4);
+
+                double idf = Math.max(1e-6, Math.log((rows - matchingRows + 0.5) / (matchingRows + 0.5)));
+                score += COLUMN_WEIGHTS[c] * idf * termFrequency * (K1 + 1)
+                        / (termFrequency + K1 * (1 - B + B * length / averageLength));
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,11 @@
+package com.shan;
+
+/**
+ * Size and modification time of a catalog entry, used to tell which files changed
+ */
+public class NoteStamp {
+    public String path;
+    public long size;
+    public long modified;
+    public String hash;
+}
@@ -0,0 +1,24 @@
+package com.shan;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index row of a text note, with the same rowid as the note's row in the notes
+ * table. The path is stored but not indexed; 2 and 3 character prefix indexes keep prefix
+ * queries from scanning the whole term list.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61, prefix = {2, 3}, notIndexed = {"path"})
+@Entity(tableName = "note_text")
+public class NoteText {
+    public String path;
+    public String title;
+    public String body;
+
+    public NoteText(String path, String title, String body) {
+        this.path = path;
+        this.title = title;
+        this.body = body;
+    }
+}
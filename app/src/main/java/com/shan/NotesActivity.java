@@ -7,12 +7,13 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.FileObserver;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -22,38 +23,36 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.shan.storage.AsyncFileStore;
+import com.shan.storage.FileComparator;
+import com.shan.storage.HashEngine;
+import com.shan.storage.PagedFileReader;
 import com.shan.texteditor.TextEditorActivity;
+import com.shan.texteditor.TextMateWarmup;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
 import java.lang.ref.WeakReference;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -61,8 +60,8 @@ public class NotesActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
     private FileAdapter fileAdapter;
-    private List<FileItem> fileItems;
     private TextView pathText;
+    private EditText searchInput;
     private BottomNavigationView bottomNav;
     private SwipeRefreshLayout swipeRefreshLayout;
 
@@ -70,11 +69,29 @@ public class NotesActivity extends AppCompatActivity {
     private File shanRootDir;
     private File homeDir;
 
-    // File observers for different directories
-    private Map<String, FileObserver> fileObservers = new HashMap<>();
+    // Watches the whole Shan tree and reports coalesced batches of changes
+    private TreeWatcher treeWatcher;
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
     private Handler mainHandler = new Handler(Looper.getMainLooper());
 
+    // Only touched on executorService
+    private final DirectoryListingCache listingCache =
+            new DirectoryListingCache(this::countFilesInFolder, this::listFromCatalog);
+    private FolderIndex folderIndex;
+
+    // Room catalog of the notes tree, reconciled on its own thread
+    private NoteCatalog noteCatalog;
+    private NoteSearch noteSearch;
+
+    // Digests for Byte Operations, computed off the main thread and cached per file version
+    private HashEngine hashEngine;
+
+    // Byte reads for Byte Operations, on executorService
+    private final AsyncFileStore fileStore = new AsyncFileStore(executorService, mainHandler::post);
+
+    // Only used on executorService
+    private final FileComparator fileComparator = new FileComparator(this::knownHash);
+
     // For creating new files
     private final ActivityResultLauncher<Intent> editorLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
@@ -90,17 +107,27 @@ public class NotesActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_notes);
 
+        // Parse the editor grammars in the background before the first note is opened
+        TextMateWarmup.prewarm(this);
+
         recyclerView = findViewById(R.id.recyclerView);
         pathText = findViewById(R.id.pathText);
+        searchInput = findViewById(R.id.searchInput);
         bottomNav = findViewById(R.id.bottomNav);
         swipeRefreshLayout = findViewById(R.id.swipeRefreshLayout);
 
         // Initialize directories
         setupDirectories();
+        folderIndex = new FolderIndex(new File(getFilesDir(), "folder_index.bin"));
+        noteCatalog = new NoteCatalog(this, shanRootDir);
+        noteCatalog.reconcileAll(changed -> mainHandler.post(() -> applyReconciled(changed)));
+        noteSearch = new NoteSearch(noteCatalog.getDao());
+        hashEngine = new HashEngine(mainHandler::post);
+        treeWatcher = new TreeWatcher(shanRootDir, changes -> mainHandler.post(() -> applyChanges(changes)));
+        treeWatcher.start();
 
         // Setup RecyclerView
-        fileItems = new ArrayList<>();
-        fileAdapter = new FileAdapter(fileItems);
+        fileAdapter = new FileAdapter();
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(fileAdapter);
 
@@ -110,6 +137,8 @@ public class NotesActivity extends AppCompatActivity {
         // Setup Bottom Navigation
         setupBottomNav();
 
+        setupSearch();
+
         // Load initial directory
         navigateToDirectory(homeDir);
     }
@@ -130,7 +159,8 @@ public class NotesActivity extends AppCompatActivity {
 
     private void setupSwipeRefresh() {
         swipeRefreshLayout.setOnRefreshListener(() -> {
-            refreshFileList();
+            // An explicit refresh also picks up anything the observer missed
+            rescanFileList();
             swipeRefreshLayout.setRefreshing(false);
         });
 
@@ -142,6 +172,55 @@ public class NotesActivity extends AppCompatActivity {
         );
     }
 
+    private void setupSearch() {
+        searchInput.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                searchNotes(searchInput.getText().toString());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void searchNotes(String input) {
+        if (input.trim().isEmpty()) {
+            return;
+        }
+        executorService.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<SearchHit> hits = noteSearch.search(input);
+            long millis = SystemClock.elapsedRealtime() - start;
+            mainHandler.post(() -> showSearchResults(input, hits, millis));
+        });
+    }
+
+    private void showSearchResults(String input, List<SearchHit> hits, long millis) {
+        if (hits.isEmpty()) {
+            if (noteCatalog.isSynced()) {
+                Toast.makeText(this, "No notes match \"" + input + "\"", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String message = "No matches yet, notes are still being indexed";
+            TreeCrawler.Stats stats = noteCatalog.getCrawlStats();
+            if (stats != null) {
+                message += String.format(Locale.getDefault(), " (%,d files so far, %,d files/s)",
+                        stats.getFiles(), Math.round(stats.getFilesPerSecond()));
+            }
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] items = new String[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            SearchHit hit = hits.get(i);
+            items[i] = hit.title + "\n" + hit.snippet;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(hits.size() + " results (" + millis + " ms)")
+                .setItems(items, (dialog, which) -> openFile(new File(hits.get(which).path)))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
     private void setupBottomNav() {
         bottomNav.setOnItemSelectedListener(item -> {
             int id = item.getItemId();
@@ -172,65 +251,76 @@ public class NotesActivity extends AppCompatActivity {
             return;
         }
 
-        // Stop observing previous directory
-        stopObservingCurrentDirectory();
-
         currentDir = dir;
         updatePathText();
         refreshFileList();
-
-        // Start observing new directory
-        startObservingDirectory(dir);
     }
 
-    private void stopObservingCurrentDirectory() {
-        if (currentDir != null) {
-            String path = currentDir.getAbsolutePath();
-            FileObserver observer = fileObservers.remove(path);
-            if (observer != null) {
-                observer.stopWatching();
-            }
+    /**
+     * Applies a batch of changes from the tree watcher to the catalog, the folder index and
+     * the cached listings, re-reading only the entries that changed, and updates the list if
+     * the current folder was affected.
+     */
+    private void applyChanges(TreeWatcher.ChangeSet changes) {
+        if (executorService.isShutdown()) {
+            return;
         }
-    }
+        final File dir = currentDir;
 
-    private void startObservingDirectory(File dir) {
-        String path = dir.getAbsolutePath();
+        executorService.execute(() -> {
+            boolean currentChanged = false;
+            for (File rescan : changes.rescans) {
+                noteCatalog.reconcile(rescan);
+                folderIndex.invalidateTree(rescan);
+                folderIndex.onChanged(rescan);
+                listingCache.evict(rescan);
+                currentChanged |= rescan.equals(dir);
+            }
+            for (File change : changes.changed) {
+                noteCatalog.reconcile(change);
+                folderIndex.onChanged(change);
+                // The entry itself and the rows of every folder above it, whose counts changed
+                for (File entry = change; !entry.equals(shanRootDir) && entry.getParentFile() != null;
+                     entry = entry.getParentFile()) {
+                    File parent = entry.getParentFile();
+                    if (listingCache.apply(parent, entry.getName()) && parent.equals(dir)) {
+                        currentChanged = true;
+                    }
+                }
+            }
+            if (currentChanged) {
+                publishFileList(dir, listingCache.get(dir));
+            }
+        });
+    }
 
-        // Don't create duplicate observers
-        if (fileObservers.containsKey(path)) {
+    /**
+     * Drops the folder counts and cached listings made stale by changes the launch-time
+     * catalog pass found. Those were made while the app was not running, and a change deep
+     * in the tree does not touch the modification times of the folders above it.
+     */
+    private void applyReconciled(List<File> changed) {
+        if (executorService.isShutdown() || changed.isEmpty()) {
             return;
         }
+        final File dir = currentDir;
 
-        FileObserver observer = new FileObserver(path) {
-            @Override
-            public void onEvent(int event, @Nullable String fileName) {
-                // Filter relevant events
-                int relevantEvents = FileObserver.CREATE | FileObserver.DELETE |
-                        FileObserver.MODIFY | FileObserver.MOVED_FROM |
-                        FileObserver.MOVED_TO;
-
-                if ((event & relevantEvents) != 0) {
-                    // Post to main thread with debouncing
-                    mainHandler.post(() -> {
-                        // Debounce multiple rapid events
-                        mainHandler.removeCallbacks(refreshRunnable);
-                        mainHandler.postDelayed(refreshRunnable, 500);
-                    });
+        executorService.execute(() -> {
+            Set<File> folders = new HashSet<>();
+            for (File change : changed) {
+                folderIndex.onChanged(change);
+                // Stops at the first folder already collected, whose ancestors are in the set too
+                for (File parent = change.getParentFile(); parent != null && folders.add(parent);
+                     parent = parent.getParentFile()) {
+                    listingCache.evict(parent);
                 }
             }
-        };
-
-        observer.startWatching();
-        fileObservers.put(path, observer);
+            if (folders.contains(dir)) {
+                publishFileList(dir, listingCache.get(dir));
+            }
+        });
     }
 
-    private Runnable refreshRunnable = new Runnable() {
-        @Override
-        public void run() {
-            refreshFileList();
-        }
-    };
-
     private void updatePathText() {
         String path = currentDir.getAbsolutePath();
         String relativePath = path.replace(shanRootDir.getAbsolutePath(), "");
@@ -241,262 +331,72 @@ public class NotesActivity extends AppCompatActivity {
     }
 
     private void refreshFileList() {
-        executorService.execute(() -> {
-            final List<FileItem> newItems = new ArrayList<>();
-
-            // Add parent directory if not at root
-            if (!currentDir.equals(shanRootDir)) {
-                newItems.add(new FileItem("..", currentDir.getParentFile(), true, 0));
-            }
-
-            // Get files and folders
-            File[] files = currentDir.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    boolean isFolder = file.isDirectory();
-                    long size = isFolder ? countFilesInFolder(file) : file.length();
-                    long modified = file.lastModified();
-                    newItems.add(new FileItem(file.getName(), file, isFolder, size, modified));
-                }
-            }
-
-            // Sort: folders first, then files (alphabetically)
-            Collections.sort(newItems, (a, b) -> {
-                if (a.isFolder && !b.isFolder) return -1;
-                if (!a.isFolder && b.isFolder) return 1;
-                return a.name.compareToIgnoreCase(b.name);
-            });
+        final File dir = currentDir;
+        executorService.execute(() -> publishFileList(dir, listingCache.get(dir)));
+    }
 
-            // Update UI on main thread
-            mainHandler.post(() -> {
-                fileItems.clear();
-                fileItems.addAll(newItems);
-                fileAdapter.notifyDataSetChanged();
-            });
+    private void rescanFileList() {
+        final File dir = currentDir;
+        executorService.execute(() -> {
+            folderIndex.invalidateTree(dir);
+            publishFileList(dir, listingCache.rescan(dir));
         });
+        noteCatalog.reconcile(dir);
     }
 
-    // ==================== BYTE-LEVEL FILE OPERATIONS ====================
-
     /**
-     * Read file as byte array using FileInputStream
+     * Folder entries from the note catalog, or null until the catalog has been reconciled
+     * with the file system. Call on executorService.
      */
-    private byte[] readFileAsBytes(File file) throws IOException {
-        FileInputStream fis = null;
-        ByteArrayOutputStream baos = null;
-        try {
-            fis = new FileInputStream(file);
-            baos = new ByteArrayOutputStream();
-
-            byte[] buffer = new byte[8192]; // 8KB buffer
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                baos.write(buffer, 0, bytesRead);
-            }
-
-            return baos.toByteArray();
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (baos != null) {
-                try {
-                    baos.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+    private List<FileItem> listFromCatalog(File dir) {
+        if (!noteCatalog.isSynced()) {
+            return null;
         }
-    }
-
-    /**
-     * Read file as byte array using FileChannel (more efficient for large files)
-     */
-    private byte[] readFileWithChannel(File file) throws IOException {
-        RandomAccessFile raf = null;
-        FileChannel channel = null;
-        try {
-            raf = new RandomAccessFile(file, "r");
-            channel = raf.getChannel();
-
-            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
-            channel.read(buffer);
-
-            return buffer.array();
-        } finally {
-            if (channel != null) {
-                try {
-                    channel.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (raf != null) {
-                try {
-                    raf.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+        List<NoteEntity> notes = noteCatalog.getDao().listChildren(dir.getAbsolutePath());
+        List<FileItem> items = new ArrayList<>(notes.size());
+        for (NoteEntity note : notes) {
+            File file = new File(note.path);
+            long size = note.isFolder ? countFilesInFolder(file) : note.size;
+            items.add(new FileItem(note.name, file, note.isFolder, size, note.modified));
         }
+        return items;
     }
 
-    /**
-     * Read file in chunks (for very large files)
-     */
-    private void readFileInChunks(File file, ChunkProcessor processor) throws IOException {
-        FileInputStream fis = null;
-        try {
-            fis = new FileInputStream(file);
-            byte[] buffer = new byte[8192]; // 8KB chunks
-            int bytesRead;
-            long position = 0;
-
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                byte[] chunk = new byte[bytesRead];
-                System.arraycopy(buffer, 0, chunk, 0, bytesRead);
-                processor.processChunk(chunk, position, bytesRead);
-                position += bytesRead;
-            }
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
+    private void publishFileList(File dir, List<FileItem> entries) {
+        final List<FileItem> newItems = new ArrayList<>(entries.size() + 1);
 
-    /**
-     * Write byte array to file
-     */
-    private void writeBytesToFile(File file, byte[] data) throws IOException {
-        FileOutputStream fos = null;
-        try {
-            fos = new FileOutputStream(file);
-            fos.write(data);
-            fos.flush();
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+        // Add parent directory if not at root
+        if (!dir.equals(shanRootDir)) {
+            newItems.add(new FileItem("..", dir.getParentFile(), true, 0));
         }
-    }
+        newItems.addAll(entries);
 
-    /**
-     * Append byte array to file
-     */
-    private void appendBytesToFile(File file, byte[] data) throws IOException {
-        FileOutputStream fos = null;
-        try {
-            fos = new FileOutputStream(file, true); // true for append mode
-            fos.write(data);
-            fos.flush();
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+        // Update UI on main thread; the adapter diffs against the current list
+        mainHandler.post(() -> {
+            if (dir.equals(currentDir)) {
+                fileAdapter.submitList(newItems);
             }
-        }
+        });
     }
 
-    /**
-     * Get file hash (MD5, SHA-1, SHA-256)
-     */
-    private String getFileHash(File file, String algorithm) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
-        FileInputStream fis = null;
-
-        try {
-            fis = new FileInputStream(file);
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
-            }
-
-            byte[] hashBytes = digest.digest();
-
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
+    // ==================== BYTE-LEVEL FILE OPERATIONS ====================
 
     /**
-     * Compare two files byte by byte
+     * Reads the first {@code count} bytes of the file on executorService, without reading
+     * the rest of it, and hands them over on the main thread.
      */
-    private boolean compareFiles(File file1, File file2) throws IOException {
-        if (file1.length() != file2.length()) {
-            return false;
-        }
-
-        FileInputStream fis1 = null;
-        FileInputStream fis2 = null;
-
-        try {
-            fis1 = new FileInputStream(file1);
-            fis2 = new FileInputStream(file2);
-
-            int b1, b2;
-            while ((b1 = fis1.read()) != -1 && (b2 = fis2.read()) != -1) {
-                if (b1 != b2) {
-                    return false;
-                }
-            }
-            return true;
-
-        } finally {
-            if (fis1 != null) {
-                try {
-                    fis1.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (fis2 != null) {
-                try {
-                    fis2.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+    private void readHead(File file, int count, OnBytesReadListener listener) {
+        fileStore.readRange(file, 0, count, new AsyncFileStore.Completion<byte[]>() {
+            @Override
+            public void onComplete(byte[] bytes) {
+                listener.onRead(bytes);
             }
-        }
-    }
 
-    /**
-     * Interface for chunk processing
-     */
-    interface ChunkProcessor {
-        void processChunk(byte[] chunk, long position, int length);
+            @Override
+            public void onError(IOException e) {
+                Toast.makeText(NotesActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     // ==================== ENHANCED FILE OPTIONS ====================
@@ -534,6 +434,7 @@ public class NotesActivity extends AppCompatActivity {
                 "Calculate MD5",
                 "Calculate SHA-1",
                 "Calculate SHA-256",
+                "Calculate all hashes",
                 "First 100 bytes",
                 "File Signature",
                 "Compare with another file"
@@ -548,21 +449,24 @@ public class NotesActivity extends AppCompatActivity {
                                 viewFileAsHex(file);
                                 break;
                             case 1: // MD5
-                                calculateAndShowHash(file, "MD5");
+                                calculateAndShowHash(file, HashEngine.MD5);
                                 break;
                             case 2: // SHA-1
-                                calculateAndShowHash(file, "SHA-1");
+                                calculateAndShowHash(file, HashEngine.SHA1);
                                 break;
                             case 3: // SHA-256
-                                calculateAndShowHash(file, "SHA-256");
+                                calculateAndShowHash(file, HashEngine.SHA256);
+                                break;
+                            case 4: // All three in one pass
+                                calculateAndShowHash(file, HashEngine.MD5, HashEngine.SHA1, HashEngine.SHA256);
                                 break;
-                            case 4: // First 100 bytes
-                                showFirstBytes(file, 100);
+                            case 5: // First 100 bytes
+                                readHead(file, 100, this::showFirstBytes);
                                 break;
-                            case 5: // File Signature
-                                showFileSignature(file);
+                            case 6: // File Signature
+                                readHead(file, 8, bytes -> showFileSignature(file, bytes));
                                 break;
-                            case 6: // Compare
+                            case 7: // Compare
                                 showFileComparisonDialog(file);
                                 break;
                         }
@@ -574,59 +478,95 @@ public class NotesActivity extends AppCompatActivity {
     }
 
     private void viewFileAsHex(File file) throws IOException {
-        byte[] bytes = readFileWithChannel(file);
-        StringBuilder hexBuilder = new StringBuilder();
-
-        // Show first 1024 bytes max
-        int maxBytes = Math.min(bytes.length, 1024);
-
-        for (int i = 0; i < maxBytes; i++) {
-            if (i > 0 && i % 16 == 0) {
-                hexBuilder.append("\n");
-            }
-            hexBuilder.append(String.format("%02X ", bytes[i] & 0xFF));
-        }
-
-        if (bytes.length > 1024) {
-            hexBuilder.append("\n... and ").append(bytes.length - 1024).append(" more bytes");
-        }
+        PagedFileReader reader = new PagedFileReader(file, mainHandler::post);
+        HexRowAdapter adapter = new HexRowAdapter(reader);
+        View view = LayoutInflater.from(this).inflate(R.layout.dialog_hex_view, null);
+        RecyclerView hexRows = view.findViewById(R.id.hexRows);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        hexRows.setLayoutManager(layoutManager);
+        hexRows.setAdapter(adapter);
 
         new AlertDialog.Builder(this)
-                .setTitle("Hex View - " + file.getName() + " (" + bytes.length + " bytes)")
-                .setMessage(hexBuilder.toString())
+                .setTitle("Hex View - " + file.getName() + " (" + reader.getSize() + " bytes)")
+                .setView(view)
                 .setPositiveButton("OK", null)
                 .setNegativeButton("Copy", (dialog, which) -> {
-                    // Copy to clipboard
+                    // Copy the rows on screen
+                    StringBuilder rows = new StringBuilder();
+                    int first = layoutManager.findFirstVisibleItemPosition();
+                    int last = layoutManager.findLastVisibleItemPosition();
+                    for (int row = Math.max(0, first); row <= last; row++) {
+                        rows.append(adapter.formatRow(row)).append('\n');
+                    }
                     android.content.ClipboardManager clipboard =
                             (android.content.ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
                     android.content.ClipData clip =
-                            android.content.ClipData.newPlainText("hex", hexBuilder.toString());
+                            android.content.ClipData.newPlainText("hex", rows.toString());
                     clipboard.setPrimaryClip(clip);
                     Toast.makeText(this, "Copied to clipboard", Toast.LENGTH_SHORT).show();
                 })
+                .setOnDismissListener(dialog -> reader.close())
                 .show();
     }
 
-    private void calculateAndShowHash(File file, String algorithm) throws Exception {
-        String hash = getFileHash(file, algorithm);
+    private void calculateAndShowHash(File file, String... algorithms) {
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Hashing " + file.getName())
+                .setMessage("Starting...")
+                .setCancelable(false)
+                .create();
+        HashEngine.Task task = hashEngine.hash(file, algorithms, new HashEngine.Callback() {
+            @Override
+            public void onProgress(long bytesHashed, long totalBytes) {
+                progressDialog.setMessage(formatFileSize(bytesHashed) + " of " + formatFileSize(totalBytes)
+                        + " (" + (bytesHashed * 100 / totalBytes) + "%)");
+            }
+
+            @Override
+            public void onHashed(Map<String, String> hashes) {
+                progressDialog.dismiss();
+                showHashes(hashes);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                progressDialog.dismiss();
+                Toast.makeText(NotesActivity.this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+        progressDialog.setButton(AlertDialog.BUTTON_NEGATIVE, "Cancel", (dialog, which) -> task.cancel());
+        progressDialog.show();
+    }
+
+    private void showHashes(Map<String, String> hashes) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> hash : hashes.entrySet()) {
+            if (text.length() > 0) {
+                text.append("\n\n");
+            }
+            if (hashes.size() > 1) {
+                text.append(hash.getKey()).append(":\n");
+            }
+            text.append(hash.getValue());
+        }
+        String title = hashes.size() == 1 ? hashes.keySet().iterator().next() + " Hash" : "File Hashes";
         new AlertDialog.Builder(this)
-                .setTitle(algorithm + " Hash")
-                .setMessage(hash)
+                .setTitle(title)
+                .setMessage(text.toString())
                 .setPositiveButton("OK", null)
                 .setNegativeButton("Copy", (dialog, which) -> {
                     android.content.ClipboardManager clipboard =
                             (android.content.ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
                     android.content.ClipData clip =
-                            android.content.ClipData.newPlainText("hash", hash);
+                            android.content.ClipData.newPlainText("hash", text.toString());
                     clipboard.setPrimaryClip(clip);
                     Toast.makeText(this, "Copied to clipboard", Toast.LENGTH_SHORT).show();
                 })
                 .show();
     }
 
-    private void showFirstBytes(File file, int count) throws IOException {
-        byte[] bytes = readFileWithChannel(file);
-        int showCount = Math.min(bytes.length, count);
+    private void showFirstBytes(byte[] bytes) {
+        int showCount = bytes.length;
 
         StringBuilder sb = new StringBuilder();
         sb.append("First ").append(showCount).append(" bytes:\n\n");
@@ -643,9 +583,7 @@ public class NotesActivity extends AppCompatActivity {
         }
 
         sb.append("\n\nHEX: ");
-        for (int i = 0; i < showCount; i++) {
-            sb.append(String.format("%02X ", bytes[i]));
-        }
+        HexRowAdapter.appendHex(sb, bytes, showCount);
 
         new AlertDialog.Builder(this)
                 .setTitle("File Preview")
@@ -654,8 +592,7 @@ public class NotesActivity extends AppCompatActivity {
                 .show();
     }
 
-    private void showFileSignature(File file) throws IOException {
-        byte[] header = readFileWithChannel(file);
+    private void showFileSignature(File file, byte[] header) {
         if (header.length < 8) {
             Toast.makeText(this, "File too small", Toast.LENGTH_SHORT).show();
             return;
@@ -665,9 +602,7 @@ public class NotesActivity extends AppCompatActivity {
         StringBuilder signature = new StringBuilder();
         signature.append("File: ").append(file.getName()).append("\n\n");
         signature.append("First 8 bytes (hex): ");
-        for (int i = 0; i < 8 && i < header.length; i++) {
-            signature.append(String.format("%02X ", header[i]));
-        }
+        HexRowAdapter.appendHex(signature, header, header.length);
 
         signature.append("\n\nPossible file type:\n");
 
@@ -728,20 +663,51 @@ public class NotesActivity extends AppCompatActivity {
                 .show();
     }
 
+    /**
+     * SHA-256 of the file if the catalog or the hash engine already has it for the current
+     * version. Call on executorService.
+     */
+    private String knownHash(File file) {
+        String hash = hashEngine.getCached(file, HashEngine.SHA256);
+        if (hash != null) {
+            return hash;
+        }
+        NoteEntity note = noteCatalog.getDao().find(file.getAbsolutePath());
+        if (note != null && note.size == file.length() && note.modified == file.lastModified()) {
+            return note.hash;
+        }
+        return null;
+    }
+
     private void compareTwoFiles(File file1, File file2) {
         executorService.execute(() -> {
             try {
-                boolean isEqual = compareFiles(file1, file2);
+                FileComparator.Result result = fileComparator.compare(file1, file2, false);
                 mainHandler.post(() -> {
-                    String message = isEqual ?
+                    StringBuilder message = new StringBuilder(result.identical ?
                             "✅ Files are IDENTICAL" :
-                            "❌ Files are DIFFERENT";
+                            "❌ Files are DIFFERENT");
+                    if (result.fromHashes) {
+                        message.append(" (same SHA-256)");
+                    }
+                    message.append("\n\nFile 1: ").append(file1.getName()).append(" (").append(file1.length()).append(" bytes)")
+                            .append("\nFile 2: ").append(file2.getName()).append(" (").append(file2.length()).append(" bytes)");
+                    if (!result.identical) {
+                        message.append("\n\nFirst difference at offset ").append(result.firstDifference)
+                                .append(String.format(Locale.ROOT, " (0x%X)", result.firstDifference))
+                                .append("\n").append(result.differingBytes).append(" bytes differ in ")
+                                .append(result.rangeCount).append(result.rangeCount == 1 ? " range" : " ranges");
+                        for (long[] range : result.ranges) {
+                            message.append(String.format(Locale.ROOT, "\n  0x%08X - 0x%08X", range[0], range[1] - 1));
+                        }
+                        if (result.rangeCount > result.ranges.size()) {
+                            message.append("\n  ...");
+                        }
+                    }
 
                     new AlertDialog.Builder(NotesActivity.this)
                             .setTitle("Comparison Result")
-                            .setMessage(message +
-                                    "\n\nFile 1: " + file1.getName() + " (" + file1.length() + " bytes)" +
-                                    "\nFile 2: " + file2.getName() + " (" + file2.length() + " bytes)")
+                            .setMessage(message.toString())
                             .setPositiveButton("OK", null)
                             .show();
                 });
@@ -755,19 +721,11 @@ public class NotesActivity extends AppCompatActivity {
 
     // ==================== EXISTING METHODS ====================
 
+    /**
+     * Files anywhere below the folder, from the folder index. Call on executorService.
+     */
     private long countFilesInFolder(File folder) {
-        long count = 0;
-        File[] files = folder.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    count += countFilesInFolder(file);
-                } else {
-                    count++;
-                }
-            }
-        }
-        return count;
+        return folderIndex.get(folder).fileCount;
     }
 
     private void goBack() {
@@ -943,19 +901,28 @@ public class NotesActivity extends AppCompatActivity {
     }
 
     private void showFileInfo(File file) {
-        String type = file.isDirectory() ? "Folder" : "File";
-        String size = file.isDirectory() ?
-                countFilesInFolder(file) + " items" :
-                formatFileSize(file.length());
+        if (!file.isDirectory()) {
+            showFileInfo(file, "File", formatFileSize(file.length()), file.length(), file.lastModified());
+            return;
+        }
+        executorService.execute(() -> {
+            FolderIndex.Aggregate aggregate = folderIndex.get(file);
+            mainHandler.post(() -> showFileInfo(file, "Folder",
+                    aggregate.fileCount + " items (" + formatFileSize(aggregate.totalBytes) + ")",
+                    aggregate.totalBytes, aggregate.newestModified));
+        });
+    }
+
+    private void showFileInfo(File file, String type, String size, long bytes, long lastModified) {
         String modified = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                .format(new Date(file.lastModified()));
+                .format(new Date(lastModified));
 
         new AlertDialog.Builder(this)
                 .setTitle("File Info")
                 .setMessage("Name: " + file.getName() +
                         "\n\nType: " + type +
                         "\nSize: " + size +
-                        "\nBytes: " + file.length() +
+                        "\nBytes: " + bytes +
                         "\nModified: " + modified +
                         "\nPath: " + file.getAbsolutePath())
                 .setPositiveButton("OK", null)
@@ -978,22 +945,33 @@ public class NotesActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The process may be killed while in the background
+        executorService.execute(folderIndex::save);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         // Clean up observers
-        for (FileObserver observer : fileObservers.values()) {
-            observer.stopWatching();
-        }
-        fileObservers.clear();
+        treeWatcher.stop();
+        // Queued after any pending listing work; shutdown lets it finish
+        executorService.execute(folderIndex::save);
         executorService.shutdown();
-        mainHandler.removeCallbacks(refreshRunnable);
+        noteCatalog.shutdown();
+        hashEngine.shutdown();
     }
 
     private interface OnNameConfirmedListener {
         void onConfirmed(String name);
     }
 
+    private interface OnBytesReadListener {
+        void onRead(byte[] bytes);
+    }
+
     // File Item Model
     static class FileItem {
         String name;
@@ -1013,14 +991,30 @@ public class NotesActivity extends AppCompatActivity {
         FileItem(String name, File file, boolean isFolder, long size) {
             this(name, file, isFolder, size, 0);
         }
+
+        boolean sameContents(FileItem other) {
+            return name.equals(other.name) && isFolder == other.isFolder
+                    && size == other.size && modified == other.modified;
+        }
     }
 
+    private static final DiffUtil.ItemCallback<FileItem> FILE_DIFF = new DiffUtil.ItemCallback<FileItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull FileItem oldItem, @NonNull FileItem newItem) {
+            return oldItem.name.equals(newItem.name) && oldItem.file.equals(newItem.file);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull FileItem oldItem, @NonNull FileItem newItem) {
+            return oldItem.sameContents(newItem);
+        }
+    };
+
     // RecyclerView Adapter
-    class FileAdapter extends RecyclerView.Adapter<FileAdapter.ViewHolder> {
-        private List<FileItem> items;
+    class FileAdapter extends ListAdapter<FileItem, FileAdapter.ViewHolder> {
 
-        FileAdapter(List<FileItem> items) {
-            this.items = items;
+        FileAdapter() {
+            super(FILE_DIFF);
         }
 
         @NonNull
@@ -1033,7 +1027,7 @@ public class NotesActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            FileItem item = items.get(position);
+            FileItem item = getItem(position);
             holder.nameText.setText(item.name);
 
             if (item.name.equals("..")) {
@@ -1064,11 +1058,6 @@ public class NotesActivity extends AppCompatActivity {
             });
         }
 
-        @Override
-        public int getItemCount() {
-            return items.size();
-        }
-
         class ViewHolder extends RecyclerView.ViewHolder {
             ImageView iconView;
             TextView nameText;
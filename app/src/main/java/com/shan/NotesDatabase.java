@@ -0,0 +1,30 @@
+package com.shan;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+@Database(entities = {NoteEntity.class, NoteText.class}, version = 4, exportSchema = false)
+public abstract class NotesDatabase extends RoomDatabase {
+
+    private static volatile NotesDatabase instance;
+
+    public abstract NoteDao noteDao();
+
+    public static NotesDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (NotesDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            NotesDatabase.class, "notes.db")
+                            // Everything in here is derived from the files and rebuilt by the reconciler
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
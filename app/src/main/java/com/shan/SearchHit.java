@@ -0,0 +1,11 @@
+package com.shan;
+
+/**
+ * A search result with the matching part of the note marked with [brackets]
+ */
+public class SearchHit {
+    public long rowid;
+    public String path;
+    public String title;
+    public String snippet;
+}
@@ -0,0 +1,9 @@
+package com.shan;
+
+/**
+ * Row of a full-text match with its raw matchinfo('pcnalx') statistics, used for ranking
+ */
+public class SearchMatch {
+    public long rowid;
+    public byte[] info;
+}
@@ -0,0 +1,290 @@
+package com.shan;
+
+import android.os.SystemClock;
+
+import com.shan.texteditor.SaveFiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks a folder tree on a fork-join pool. Every folder is listed by its own task and its
+ * files are checked in small batches, so enumeration and stat calls spread across all cores.
+ * <p>
+ * Entries the visitor wants read are handed off to a small pool of reader threads: on flash
+ * storage a handful of concurrent reads saturates the device and more only adds contention.
+ * Fork-join workers never block, the reader threads may (on a full queue, say), and a
+ * cancelled crawl interrupts them.
+ */
+class TreeCrawler {
+
+    // Files checked per task before the rest of a folder is split off
+    private static final int FILES_PER_TASK = 16;
+
+    interface Visitor {
+        /**
+         * Called on crawler threads, concurrently, for every file and folder below the root
+         * (not for the root itself). Must not block.
+         *
+         * @return whether {@link #read} should be called for the entry
+         */
+        boolean visit(File file, boolean isFolder);
+
+        /**
+         * Called on a reader thread for each entry {@link #visit} selected. May block; the
+         * thread is interrupted if the crawl is cancelled.
+         */
+        void read(File file, boolean isFolder) throws InterruptedException;
+    }
+
+    /**
+     * Progress of a crawl; readable while it runs.
+     */
+    static class Stats {
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong folders = new AtomicLong();
+        final long start = SystemClock.elapsedRealtime();
+        // -1 until the crawl is done
+        volatile long millis = -1;
+
+        long getFiles() {
+            return files.get();
+        }
+
+        long getMillis() {
+            long done = millis;
+            return done >= 0 ? done : SystemClock.elapsedRealtime() - start;
+        }
+
+        double getFilesPerSecond() {
+            long elapsed = getMillis();
+            return elapsed == 0 ? files.get() : files.get() * 1000.0 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return files.get() + " files, " + folders.get() + " folders in " + getMillis() + " ms ("
+                    + Math.round(getFilesPerSecond()) + " files/s)";
+        }
+    }
+
+    /**
+     * A running crawl. It is done once the walk has finished and every read it handed off
+     * has returned.
+     */
+    class Crawl {
+        private final Visitor visitor;
+        private final Stats stats = new Stats();
+        private final CountDownLatch done = new CountDownLatch(1);
+        // The walk itself plus every read it handed off that has not returned
+        private final AtomicInteger pending = new AtomicInteger(1);
+        // Reader threads inside visitor.read; guarded by itself, as is the cancelled write
+        private final Set<Thread> reading = new HashSet<>();
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        Crawl(Visitor visitor) {
+            this.visitor = visitor;
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        Stats getStats() {
+            return stats;
+        }
+
+        /**
+         * Stops the walk, drops reads that have not started and interrupts those that have.
+         * Does not wait for them.
+         */
+        void cancel() {
+            synchronized (reading) {
+                cancelled = true;
+                for (Thread thread : reading) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Waits for the crawl and rethrows anything the visitor threw.
+         */
+        Stats join() throws InterruptedException {
+            done.await();
+            if (failure != null) {
+                throw new IllegalStateException("Crawl failed", failure);
+            }
+            return stats;
+        }
+
+        private void submitRead(File file, boolean isFolder) {
+            pending.incrementAndGet();
+            try {
+                readers.execute(() -> read(file, isFolder));
+            } catch (RejectedExecutionException e) {
+                fail(e);
+                finishOne();
+            }
+        }
+
+        private void read(File file, boolean isFolder) {
+            Thread thread = Thread.currentThread();
+            synchronized (reading) {
+                if (cancelled) {
+                    finishOne();
+                    return;
+                }
+                reading.add(thread);
+            }
+            try {
+                visitor.read(file, isFolder);
+            } catch (InterruptedException e) {
+                if (!cancelled) {
+                    fail(e);
+                }
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            } finally {
+                synchronized (reading) {
+                    reading.remove(thread);
+                }
+                // A cancel that raced the end of the read must not reach the next task
+                Thread.interrupted();
+                finishOne();
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            cancel();
+        }
+
+        private void finishOne() {
+            if (pending.decrementAndGet() == 0) {
+                stats.millis = SystemClock.elapsedRealtime() - stats.start;
+                done.countDown();
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ExecutorService readers;
+
+    TreeCrawler(int parallelism, int ioConcurrency) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.readers = Executors.newFixedThreadPool(ioConcurrency);
+    }
+
+    /**
+     * Starts crawling {@code root}.
+     */
+    Crawl start(File root, Visitor visitor) {
+        Crawl crawl = new Crawl(visitor);
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    new FolderTask(root, crawl).invoke();
+                } catch (RuntimeException | Error e) {
+                    crawl.fail(e);
+                } finally {
+                    crawl.finishOne();
+                }
+            }
+        });
+        return crawl;
+    }
+
+    void shutdown() {
+        pool.shutdown();
+        readers.shutdown();
+    }
+
+    private class FolderTask extends RecursiveAction {
+        private final File folder;
+        private final Crawl crawl;
+
+        FolderTask(File folder, Crawl crawl) {
+            this.folder = folder;
+            this.crawl = crawl;
+        }
+
+        @Override
+        protected void compute() {
+            if (crawl.cancelled) {
+                return;
+            }
+            File[] children = folder.listFiles();
+            if (children == null) {
+                return;
+            }
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            List<File> files = new ArrayList<>();
+            for (File child : children) {
+                if (SaveFiles.isSaveFile(child.getName())) {
+                    continue;
+                }
+                if (child.isDirectory()) {
+                    crawl.stats.folders.incrementAndGet();
+                    if (crawl.visitor.visit(child, true)) {
+                        crawl.submitRead(child, true);
+                    }
+                    tasks.add(new FolderTask(child, crawl));
+                } else {
+                    files.add(child);
+                }
+            }
+            if (!files.isEmpty()) {
+                tasks.add(new FileTask(files, 0, files.size(), crawl));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final Crawl crawl;
+
+        FileTask(List<File> files, int from, int to, Crawl crawl) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.crawl = crawl;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FileTask(files, from, middle, crawl),
+                        new FileTask(files, middle, to, crawl));
+                return;
+            }
+            for (int i = from; i < to && !crawl.cancelled; i++) {
+                File file = files.get(i);
+                if (crawl.visitor.visit(file, false)) {
+                    crawl.submitRead(file, false);
+                }
+                crawl.stats.files.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.shan;
+
+import android.os.FileObserver;
+import android.os.SystemClock;
+
+import com.shan.texteditor.SaveFiles;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import kotlin.Unit;
+
+/**
+ * Watches every folder of a tree with one {@link FileChangeObserver} each and funnels their
+ * events into a single stream of change sets.
+ * <p>
+ * Events are coalesced per path: a burst (say, an editor writing a temp file and renaming it
+ * over a note) is delivered once, after the tree has been quiet for a moment or at the latest
+ * after {@link #MAX_DELAY_MS}. Folders created or moved into the tree are watched as soon as
+ * their batch is processed, and removed folders stop being watched.
+ */
+class TreeWatcher {
+
+    // Quiet period that ends a burst
+    private static final long COALESCE_MS = 100;
+
+    // Upper bound on how long a change can wait during a continuous burst
+    private static final long MAX_DELAY_MS = 1000;
+
+    /**
+     * A coalesced batch of changes.
+     */
+    static class ChangeSet {
+        /** Files or folders that were created, modified, moved or deleted */
+        final List<File> changed;
+
+        /** Folders whose contents must be listed again because the event did not say what changed */
+        final List<File> rescans;
+
+        ChangeSet(List<File> changed, List<File> rescans) {
+            this.changed = changed;
+            this.rescans = rescans;
+        }
+    }
+
+    interface Listener {
+        /** Called on the watcher thread */
+        void onChanges(ChangeSet changes);
+    }
+
+    private final File root;
+    private final Listener listener;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // Only touched on the watcher thread
+    private final Map<String, FileChangeObserver> observers = new HashMap<>();
+
+    // Guarded by lock
+    private final Object lock = new Object();
+    private Set<File> pendingChanges = new LinkedHashSet<>();
+    private Set<File> pendingRescans = new LinkedHashSet<>();
+    private long burstStart;
+    private ScheduledFuture<?> flushFuture;
+    private boolean stopped;
+
+    TreeWatcher(File root, Listener listener) {
+        this.root = root;
+        this.listener = listener;
+    }
+
+    void start() {
+        executor.execute(() -> watchTree(root));
+    }
+
+    /**
+     * Stops every observer. Changes still waiting for their burst to end are dropped.
+     */
+    void stop() {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            // shutdown() alone would still run a flush scheduled for the current burst
+            stopped = true;
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            pendingChanges.clear();
+            pendingRescans.clear();
+            executor.execute(() -> {
+                for (FileChangeObserver observer : observers.values()) {
+                    observer.stopWatching();
+                }
+                observers.clear();
+            });
+            executor.shutdown();
+        }
+    }
+
+    private void watchTree(File top) {
+        Deque<File> folders = new ArrayDeque<>();
+        folders.push(top);
+        while (!folders.isEmpty()) {
+            File folder = folders.pop();
+            String path = folder.getAbsolutePath();
+            if (!observers.containsKey(path)) {
+                FileChangeObserver observer = new FileChangeObserver(path, (event, name) -> {
+                    onEvent(folder, event, name);
+                    return Unit.INSTANCE;
+                });
+                observer.startWatching();
+                observers.put(path, observer);
+            }
+            File[] children = folder.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory()) {
+                        folders.push(child);
+                    }
+                }
+            }
+        }
+    }
+
+    private void unwatchTree(File top) {
+        String path = top.getAbsolutePath();
+        String prefix = path + File.separator;
+        Iterator<Map.Entry<String, FileChangeObserver>> entries = observers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, FileChangeObserver> entry = entries.next();
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+                entry.getValue().stopWatching();
+                entries.remove();
+            }
+        }
+    }
+
+    // Called on the observer thread
+    private void onEvent(File folder, int event, String name) {
+        if (name != null && SaveFiles.isSaveFile(name)) {
+            // An editor save in progress; its rename onto the note is reported on its own
+            return;
+        }
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            if (name == null || (event & FileObserver.DELETE_SELF) != 0) {
+                pendingRescans.add(folder);
+            } else {
+                pendingChanges.add(new File(folder, name));
+            }
+
+            long now = SystemClock.uptimeMillis();
+            if (burstStart == 0) {
+                burstStart = now;
+            }
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+            }
+            long delay = Math.min(COALESCE_MS, Math.max(0, burstStart + MAX_DELAY_MS - now));
+            flushFuture = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<File> changed;
+        List<File> rescans;
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            changed = new ArrayList<>(pendingChanges);
+            rescans = new ArrayList<>(pendingRescans);
+            pendingChanges = new LinkedHashSet<>();
+            pendingRescans = new LinkedHashSet<>();
+            burstStart = 0;
+            flushFuture = null;
+        }
+        if (changed.isEmpty() && rescans.isEmpty()) {
+            return;
+        }
+
+        // Keep the set of observers in line with the folders that exist now
+        for (File file : changed) {
+            if (file.isDirectory()) {
+                watchTree(file);
+            } else if (observers.containsKey(file.getAbsolutePath())) {
+                unwatchTree(file);
+            }
+        }
+        for (File folder : rescans) {
+            if (!folder.isDirectory()) {
+                unwatchTree(folder);
+            }
+        }
+
+        synchronized (lock) {
+            if (stopped) {
+                // The stop task runs next and also removes the observers added above
+                return;
+            }
+        }
+        listener.onChanges(new ChangeSet(changed, rescans));
+    }
+}
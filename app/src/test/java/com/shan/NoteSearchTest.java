@@ -0,0 +1,147 @@
+package com.shan;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NoteSearchTest {
+
+    @Test
+    public void wordsBecomePrefixTerms() {
+        assertEquals("mark* down*", NoteSearch.buildQuery("mark down"));
+    }
+
+    @Test
+    public void quotedTextBecomesAPhrase() {
+        assertEquals("todo* \"release notes\" draft*", NoteSearch.buildQuery("todo \"release notes\" draft"));
+    }
+
+    @Test
+    public void unclosedQuoteStillStartsAPhrase() {
+        assertEquals("a* \"b c\"", NoteSearch.buildQuery("a \"b c"));
+    }
+
+    @Test
+    public void syntaxCharactersAndOperatorsAreDropped() {
+        assertEquals("foo* bar* baz*", NoteSearch.buildQuery("foo* -bar OR (baz) and NEAR"));
+    }
+
+    @Test
+    public void nothingSearchableGivesNull() {
+        assertNull(NoteSearch.buildQuery(""));
+        assertNull(NoteSearch.buildQuery("\"\" * - ()"));
+        assertNull(NoteSearch.buildQuery("AND or Not"));
+    }
+
+    /**
+     * matchinfo('pcnalx') for one phrase over the path, title and body columns.
+     */
+    private static byte[] info(int rows, int[] average, int[] length, int[] hits, int[] matchingRows) {
+        int columns = 3;
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + 2 * columns + 3 * columns)).order(ByteOrder.nativeOrder());
+        buffer.putInt(1).putInt(columns).putInt(rows);
+        for (int value : average) {
+            buffer.putInt(value);
+        }
+        for (int value : length) {
+            buffer.putInt(value);
+        }
+        for (int c = 0; c < columns; c++) {
+            buffer.putInt(hits[c]).putInt(hits[c]).putInt(matchingRows[c]);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] bodyHits(int hits, int length) {
+        return info(100, new int[]{0, 5, 100}, new int[]{0, 5, length},
+                new int[]{0, 0, hits}, new int[]{0, 0, 10});
+    }
+
+    @Test
+    public void moreHitsScoreHigher() {
+        assertTrue(NoteSearch.score(bodyHits(3, 100)) > NoteSearch.score(bodyHits(1, 100)));
+    }
+
+    @Test
+    public void shorterNotesScoreHigher() {
+        assertTrue(NoteSearch.score(bodyHits(1, 50)) > NoteSearch.score(bodyHits(1, 500)));
+    }
+
+    @Test
+    public void titleHitsOutweighBodyHits() {
+        byte[] title = info(100, new int[]{0, 5, 100}, new int[]{0, 5, 100},
+                new int[]{0, 1, 0}, new int[]{0, 10, 0});
+        byte[] body = info(100, new int[]{0, 5, 100}, new int[]{0, 5, 100},
+                new int[]{0, 0, 1}, new int[]{0, 0, 10});
+
+        assertTrue(NoteSearch.score(title) > NoteSearch.score(body));
+    }
+
+    @Test
+    public void pathColumnIsIgnored() {
+        byte[] path = info(100, new int[]{10, 5, 100}, new int[]{10, 5, 100},
+                new int[]{4, 0, 0}, new int[]{10, 0, 0});
+
+        assertEquals(0, NoteSearch.score(path), 0);
+    }
+
+    @Test
+    public void searchReturnsTheBestHitsBestFirst() {
+        List<SearchMatch> matches = new ArrayList<>();
+        matches.add(match(1, bodyHits(1, 100)));
+        matches.add(match(2, bodyHits(5, 100)));
+        matches.add(match(3, bodyHits(2, 100)));
+        List<List<Long>> requested = new ArrayList<>();
+        NoteDao dao = (NoteDao) Proxy.newProxyInstance(NoteDao.class.getClassLoader(),
+                new Class<?>[]{NoteDao.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "match":
+                            assertEquals("note*", args[0]);
+                            return matches;
+                        case "hits":
+                            @SuppressWarnings("unchecked")
+                            List<Long> rowIds = (List<Long>) args[1];
+                            requested.add(rowIds);
+                            // Returned in rowid order, as SQLite would
+                            List<SearchHit> hits = new ArrayList<>();
+                            for (long rowid = 1; rowid <= 3; rowid++) {
+                                if (rowIds.contains(rowid)) {
+                                    hits.add(hit(rowid));
+                                }
+                            }
+                            return hits;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        List<SearchHit> hits = new NoteSearch(dao).search("note", 2);
+
+        assertEquals(Arrays.asList(2L, 3L), requested.get(0));
+        assertEquals(2, hits.size());
+        assertEquals(2L, hits.get(0).rowid);
+        assertEquals(3L, hits.get(1).rowid);
+    }
+
+    private static SearchMatch match(long rowid, byte[] info) {
+        SearchMatch match = new SearchMatch();
+        match.rowid = rowid;
+        match.info = info;
+        return match;
+    }
+
+    private static SearchHit hit(long rowid) {
+        SearchHit hit = new SearchHit();
+        hit.rowid = rowid;
+        return hit;
+    }
+}
@@ -0,0 +1,49 @@
+plugins {
+    java
+}
+
+// JMH benchmarks for the file I/O, hashing and text loading paths. They run on the host JVM,
+// so they measure the algorithms and the file system, not Android's runtime:
+//
+//   ./gradlew :benchmark:jmh
+//   ./gradlew :benchmark:jmh -PjmhArgs="HashBenchmark -p size=1048576"
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+sourceSets {
+    main {
+        java {
+            // Android-free classes of the app modules are benchmarked in place, not copied
+            srcDir("../app/src/main/java")
+            srcDir("../texteditor/src/main/java")
+            include(
+                "com/shan/benchmark/**",
+                "com/shan/FolderCountBenchmark.java",
+                "com/shan/FolderIndex.java",
+                "com/shan/texteditor/DocumentLoader.java",
+                "com/shan/texteditor/SaveFiles.java",
+                "com/shan/texteditor/TextFormat.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(project(":storage"))
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.generator)
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks; JMH options go in -PjmhArgs"
+    dependsOn(tasks.named("classes"))
+    mainClass.set("org.openjdk.jmh.Main")
+    classpath = sourceSets["main"].runtimeClasspath
+    val jmhArgs = providers.gradleProperty("jmhArgs").orNull
+    if (jmhArgs != null) {
+        args(jmhArgs.split(" ").filter { it.isNotBlank() })
+    }
+}
@@ -0,0 +1,103 @@
+package com.shan;
+
+import com.shan.benchmark.BenchmarkFiles;
+import com.shan.benchmark.LegacyIo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting the files under a folder: the recursive countFilesInFolder against
+ * {@link FolderIndex} when it has nothing yet, when it is loaded from its file at launch and
+ * when it is already in memory. Lives in com.shan because FolderIndex is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FolderCountBenchmark {
+
+    private static final int FILES_PER_FOLDER = 50;
+    private static final int FOLDERS_PER_FOLDER = 4;
+
+    @Param({"1000", "20000"})
+    public int files;
+
+    private File dir;
+    private File root;
+    private File indexFile;
+    private FolderIndex warmIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.tempDir("folders");
+        root = new File(dir, "notes");
+        root.mkdir();
+        fill(root, files);
+
+        indexFile = new File(dir, "folder_index.bin");
+        FolderIndex index = new FolderIndex(indexFile);
+        index.get(root);
+        index.save();
+
+        warmIndex = new FolderIndex(indexFile);
+        warmIndex.get(root);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.deleteTree(dir);
+    }
+
+    @Benchmark
+    public long legacyCountFilesInFolder() {
+        return LegacyIo.countFilesInFolder(root);
+    }
+
+    @Benchmark
+    public long folderIndexCold() {
+        return new FolderIndex(new File(dir, "missing.bin")).get(root).fileCount;
+    }
+
+    @Benchmark
+    public long folderIndexLoaded() {
+        return new FolderIndex(indexFile).get(root).fileCount;
+    }
+
+    @Benchmark
+    public long folderIndexWarm() {
+        return warmIndex.get(root).fileCount;
+    }
+
+    // Fills the folder, then spreads what is left over its subfolders
+    private static void fill(File folder, int count) throws IOException {
+        int here = Math.min(FILES_PER_FOLDER, count);
+        for (int i = 0; i < here; i++) {
+            new File(folder, "note" + i + ".md").createNewFile();
+        }
+        int left = count - here;
+        for (int i = 0; i < FOLDERS_PER_FOLDER && left > 0; i++) {
+            int share = (left + FOLDERS_PER_FOLDER - 1 - i) / (FOLDERS_PER_FOLDER - i);
+            File child = new File(folder, "folder" + i);
+            child.mkdir();
+            fill(child, share);
+            left -= share;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.shan.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Test files for the benchmarks, written once per trial into a temporary folder.
+ */
+public final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    public static File tempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Random bytes; the same seed gives the same file.
+     */
+    public static File binary(File dir, String name, long size, long seed) throws IOException {
+        File file = new File(dir, name);
+        Random random = new Random(seed);
+        byte[] block = new byte[64 * 1024];
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Markdown-like UTF-8 text: short lines of words with the occasional heading and
+     * non-ASCII character.
+     */
+    public static File text(File dir, String name, long size, long seed) throws IOException {
+        String[] words = {"note", "markdown", "editor", "shan", "file", "r\u00e9sum\u00e9", "tag", "#todo",
+                "the", "a", "list", "**bold**", "`code`", "\u00fcber", "line", "text"};
+        File file = new File(dir, name);
+        Random random = new Random(seed);
+        StringBuilder line = new StringBuilder();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            long written = 0;
+            while (written < size) {
+                line.setLength(0);
+                if (random.nextInt(20) == 0) {
+                    line.append("## ");
+                }
+                int count = 4 + random.nextInt(12);
+                for (int i = 0; i < count; i++) {
+                    line.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                int length = (int) Math.min(bytes.length, size - written);
+                out.write(bytes, 0, length);
+                written += length;
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    public static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
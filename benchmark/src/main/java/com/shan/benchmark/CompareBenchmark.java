@@ -0,0 +1,96 @@
+package com.shan.benchmark;
+
+import com.shan.storage.FileComparator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing two identical files, which has to read both of them to the end.
+ * <p>
+ * The byte-at-a-time compareFiles makes two system calls per byte, which puts a single call
+ * on 500 MB at several minutes, so it only runs up to 16 MB. The sizes it shares with
+ * {@link FileComparator} are enough to compare them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompareBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Files {
+        // 1 KB, 1 MB, 64 MB, 500 MB
+        @Param({"1024", "1048576", "67108864", "524288000"})
+        public long size;
+
+        File dir;
+        File a;
+        File b;
+
+        @Setup
+        public void setUp() throws IOException {
+            dir = BenchmarkFiles.tempDir("compare");
+            a = BenchmarkFiles.binary(dir, "a.bin", size, 1);
+            b = BenchmarkFiles.binary(dir, "b.bin", size, 1);
+        }
+
+        @TearDown
+        public void tearDown() {
+            BenchmarkFiles.deleteTree(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SmallFiles {
+        // 1 KB, 1 MB, 16 MB
+        @Param({"1024", "1048576", "16777216"})
+        public long size;
+
+        File dir;
+        File a;
+        File b;
+
+        @Setup
+        public void setUp() throws IOException {
+            dir = BenchmarkFiles.tempDir("compare");
+            a = BenchmarkFiles.binary(dir, "a.bin", size, 1);
+            b = BenchmarkFiles.binary(dir, "b.bin", size, 1);
+        }
+
+        @TearDown
+        public void tearDown() {
+            BenchmarkFiles.deleteTree(dir);
+        }
+    }
+
+    @Benchmark
+    public boolean legacyCompareFiles(SmallFiles files) throws IOException {
+        return LegacyIo.compareFiles(files.a, files.b);
+    }
+
+    @Benchmark
+    public FileComparator.Result fileComparatorFirstDifference(Files files) throws IOException {
+        return new FileComparator(null).compare(files.a, files.b, true);
+    }
+
+    @Benchmark
+    public FileComparator.Result fileComparatorFullReport(Files files) throws IOException {
+        return new FileComparator(null).compare(files.a, files.b, false);
+    }
+}
@@ -0,0 +1,114 @@
+package com.shan.benchmark;
+
+import com.shan.storage.ChunkStream;
+import com.shan.storage.FileStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Whole-file reads and chunked streaming: the copy-per-chunk readFileInChunks against the
+ * pooled, mapped and parallel modes of {@link ChunkStream}. Every chunk processor checksums
+ * its chunk, so mapped reads pay for touching the pages like the others do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileReadBenchmark {
+
+    // 1 KB, 1 MB, 64 MB, 500 MB
+    @Param({"1024", "1048576", "67108864", "524288000"})
+    public long size;
+
+    private File dir;
+    private File file;
+    private ChunkStream chunkStream;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.tempDir("read");
+        file = BenchmarkFiles.binary(dir, "data.bin", size, 1);
+        chunkStream = new ChunkStream();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        BenchmarkFiles.deleteTree(dir);
+    }
+
+    @Benchmark
+    public byte[] legacyReadFileWithChannel() throws IOException {
+        return LegacyIo.readFileWithChannel(file);
+    }
+
+    @Benchmark
+    public byte[] fileStoreReadAll() throws IOException {
+        return FileStore.readAll(file);
+    }
+
+    @Benchmark
+    public long legacyReadFileInChunks() throws IOException {
+        long[] sum = {0};
+        LegacyIo.readFileInChunks(file, (chunk, position, length) ->
+                sum[0] ^= checksum(ByteBuffer.wrap(chunk, 0, length)));
+        return sum[0];
+    }
+
+    @Benchmark
+    public long chunkStreamRead() throws IOException {
+        long[] sum = {0};
+        chunkStream.read(file, (chunk, position) -> sum[0] ^= checksum(chunk));
+        return sum[0];
+    }
+
+    @Benchmark
+    public long chunkStreamReadMapped() throws IOException {
+        long[] sum = {0};
+        chunkStream.readMapped(file, (chunk, position) -> sum[0] ^= checksum(chunk));
+        return sum[0];
+    }
+
+    @Benchmark
+    public long chunkStreamReadParallel() throws IOException, InterruptedException {
+        AtomicLong sum = new AtomicLong();
+        chunkStream.readParallel(file, (chunk, position) -> sum.accumulateAndGet(checksum(chunk), (a, b) -> a ^ b), executor);
+        return sum.get();
+    }
+
+    // Cheap enough not to hide the I/O, but reads every byte
+    private static long checksum(ByteBuffer chunk) {
+        long sum = 0;
+        int limit = chunk.limit();
+        int i = chunk.position();
+        for (; i + 8 <= limit; i += 8) {
+            sum ^= chunk.getLong(i);
+        }
+        for (; i < limit; i++) {
+            sum ^= chunk.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,119 @@
+package com.shan.benchmark;
+
+import com.shan.storage.HashEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * getFileHash's 8 KB stream against {@link HashEngine}, for one digest and for all three.
+ * The file's modification time is bumped before every engine call so its cache never
+ * answers; cache hits are free and not worth measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HashBenchmark {
+
+    private static final String[] ALL = {HashEngine.MD5, HashEngine.SHA1, HashEngine.SHA256};
+
+    // 1 KB, 1 MB, 64 MB, 500 MB
+    @Param({"1024", "1048576", "67108864", "524288000"})
+    public long size;
+
+    private File dir;
+    private File file;
+    private HashEngine engine;
+    private long modified;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.tempDir("hash");
+        file = BenchmarkFiles.binary(dir, "data.bin", size, 1);
+        modified = file.lastModified();
+        // Results are handed over on the engine's thread
+        engine = new HashEngine(Runnable::run);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+        BenchmarkFiles.deleteTree(dir);
+    }
+
+    @Benchmark
+    public String legacySha256() throws Exception {
+        return LegacyIo.getFileHash(file, HashEngine.SHA256);
+    }
+
+    @Benchmark
+    public String[] legacyAllThree() throws Exception {
+        String[] hashes = new String[ALL.length];
+        for (int i = 0; i < ALL.length; i++) {
+            hashes[i] = LegacyIo.getFileHash(file, ALL[i]);
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public Map<String, String> engineSha256() throws Exception {
+        return hash(HashEngine.SHA256);
+    }
+
+    @Benchmark
+    public Map<String, String> engineAllThree() throws Exception {
+        return hash(ALL);
+    }
+
+    private Map<String, String> hash(String... algorithms) throws Exception {
+        // Whole seconds, for file systems with coarse timestamps
+        modified += 1000;
+        file.setLastModified(modified);
+
+        AtomicReference<Map<String, String>> result = new AtomicReference<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        engine.hash(file, algorithms, new HashEngine.Callback() {
+            @Override
+            public void onProgress(long bytesHashed, long totalBytes) {
+            }
+
+            @Override
+            public void onHashed(Map<String, String> hashes) {
+                result.set(hashes);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error.set(e);
+                done.countDown();
+            }
+        });
+        done.await();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return result.get();
+    }
+}
@@ -0,0 +1,145 @@
+package com.shan.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The I/O paths as they were before they were replaced, kept as benchmark baselines. Each
+ * method is the original NotesActivity or TextEditorActivity code with the UI removed.
+ */
+public final class LegacyIo {
+
+    public interface ChunkProcessor {
+        void processChunk(byte[] chunk, long position, int length);
+    }
+
+    private LegacyIo() {
+    }
+
+    /**
+     * TextEditorActivity's load: readLine() loop into one StringBuilder
+     */
+    public static String readLines(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(fis, StandardCharsets.UTF_8));
+        StringBuilder content = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            content.append(line).append("\n");
+        }
+        reader.close();
+        fis.close();
+        return content.toString();
+    }
+
+    public static byte[] readFileWithChannel(File file) throws IOException {
+        RandomAccessFile raf = null;
+        FileChannel channel = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            channel = raf.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer);
+
+            return buffer.array();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+            if (raf != null) {
+                raf.close();
+            }
+        }
+    }
+
+    public static void readFileInChunks(File file, ChunkProcessor processor) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192]; // 8KB chunks
+            int bytesRead;
+            long position = 0;
+
+            while ((bytesRead = fis.read(buffer)) != -1) {
+                byte[] chunk = new byte[bytesRead];
+                System.arraycopy(buffer, 0, chunk, 0, bytesRead);
+                processor.processChunk(chunk, position, bytesRead);
+                position += bytesRead;
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    public static String getFileHash(File file, String algorithm) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+
+            while ((bytesRead = fis.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+
+            byte[] hashBytes = digest.digest();
+
+            // Convert to hex string
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } finally {
+            fis.close();
+        }
+    }
+
+    public static boolean compareFiles(File file1, File file2) throws IOException {
+        if (file1.length() != file2.length()) {
+            return false;
+        }
+
+        FileInputStream fis1 = new FileInputStream(file1);
+        FileInputStream fis2 = new FileInputStream(file2);
+        try {
+            int b1, b2;
+            while ((b1 = fis1.read()) != -1 && (b2 = fis2.read()) != -1) {
+                if (b1 != b2) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            fis1.close();
+            fis2.close();
+        }
+    }
+
+    public static long countFilesInFolder(File folder) {
+        long count = 0;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    count += countFilesInFolder(file);
+                } else {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,100 @@
+package com.shan.benchmark;
+
+import com.shan.texteditor.DocumentLoader;
+import com.shan.texteditor.TextFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a document: the editor's old readLine loop against {@link DocumentLoader}, run on
+ * the calling thread. Both end with the whole text decoded in memory, as one String or as
+ * the chunks the editor appends.
+ * <p>
+ * A 500 MB document is about 1 GB of chars and the old path copies it once more in
+ * toString, hence the larger heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextLoadBenchmark {
+
+    // 1 KB, 1 MB, 64 MB, 500 MB
+    @Param({"1024", "1048576", "67108864", "524288000"})
+    public long size;
+
+    private File dir;
+    private File file;
+    private DocumentLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.tempDir("text");
+        file = BenchmarkFiles.text(dir, "note.md", size, 1);
+        loader = new DocumentLoader(Runnable::run, Runnable::run);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.deleteTree(dir);
+    }
+
+    @Benchmark
+    public String legacyReadLines() throws IOException {
+        return LegacyIo.readLines(file);
+    }
+
+    @Benchmark
+    public List<String> documentLoader() throws IOException {
+        List<String> chunks = new ArrayList<>();
+        IOException[] error = {null};
+        loader.load(() -> new FileInputStream(file), file.length(), new DocumentLoader.Callback() {
+            @Override
+            public void onFirstChunk(String text, TextFormat format) {
+                chunks.add(text);
+            }
+
+            @Override
+            public void onChunk(String text) {
+                chunks.add(text);
+            }
+
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+            }
+
+            @Override
+            public void onComplete(boolean lossy) {
+            }
+
+            @Override
+            public void onError(IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return chunks;
+    }
+}
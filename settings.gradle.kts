@@ -26,4 +26,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Shan"
 include(":app")
-include(":texteditor")
\ No newline at end of file
+include(":texteditor")
+include(":storage")
+include(":benchmark")
\ No newline at end of file
@@ -0,0 +1,13 @@
+plugins {
+    `java-library`
+}
+
+// Plain JVM library: no Android APIs, so everything here is unit tested on the host
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,63 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link FileStore} operations run on an I/O executor, with the outcome delivered on a
+ * callback executor (on Android, usually the main thread).
+ */
+public class AsyncFileStore {
+
+    public interface Completion<T> {
+        void onComplete(T result);
+
+        void onError(IOException e);
+    }
+
+    private interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    private final Executor ioExecutor;
+    private final Executor callbackExecutor;
+
+    public AsyncFileStore(Executor ioExecutor, Executor callbackExecutor) {
+        this.ioExecutor = ioExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public void readAll(File file, Completion<byte[]> completion) {
+        submit(() -> FileStore.readAll(file), completion);
+    }
+
+    public void readRange(File file, long position, int length, Completion<byte[]> completion) {
+        submit(() -> FileStore.readRange(file, position, length), completion);
+    }
+
+    public void write(File file, byte[] data, Completion<Void> completion) {
+        submit(() -> {
+            FileStore.write(file, data);
+            return null;
+        }, completion);
+    }
+
+    public void append(File file, byte[] data, Completion<Void> completion) {
+        submit(() -> {
+            FileStore.append(file, data);
+            return null;
+        }, completion);
+    }
+
+    private <T> void submit(IoCall<T> call, Completion<T> completion) {
+        ioExecutor.execute(() -> {
+            try {
+                T result = call.call();
+                callbackExecutor.execute(() -> completion.onComplete(result));
+            } catch (IOException e) {
+                callbackExecutor.execute(() -> completion.onError(e));
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.shan.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reusable direct buffers of one size. Direct buffers are expensive to allocate and are only
+ * freed by the garbage collector, so readers that run often borrow them from here instead.
+ * Thread-safe.
+ */
+public class BufferPool {
+
+    private final int bufferBytes;
+    private final int maxPooled;
+
+    // Guarded by itself
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+
+    /**
+     * @param maxPooled buffers kept when released; more can be borrowed at once
+     */
+    public BufferPool(int bufferBytes, int maxPooled) {
+        this.bufferBytes = bufferBytes;
+        this.maxPooled = maxPooled;
+    }
+
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * @return a cleared buffer of {@link #getBufferBytes()} bytes
+     */
+    public ByteBuffer acquire() {
+        synchronized (buffers) {
+            ByteBuffer buffer = buffers.poll();
+            if (buffer != null) {
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferBytes || !buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer does not belong to this pool");
+        }
+        synchronized (buffers) {
+            if (buffers.size() < maxPooled) {
+                buffers.push(buffer);
+            }
+        }
+    }
+}
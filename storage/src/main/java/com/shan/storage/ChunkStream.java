@@ -0,0 +1,156 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Streams a file to a {@link ChunkProcessor} in fixed-size chunks without copying them.
+ * <p>
+ * Processors get a read-only view that is only valid during the call: either over a pooled
+ * direct buffer the chunk was read into, or straight over a memory-mapped region of the file.
+ * A processor that needs the bytes later has to copy them itself.
+ */
+public class ChunkStream {
+
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+
+    // Mapped at once by the mapped modes; a multiple of any sensible chunk size
+    private static final long WINDOW_BYTES = 8L * 1024 * 1024;
+
+    // Direct buffers kept for reuse; one per concurrent sequential read is enough
+    private static final int POOLED_BUFFERS = 4;
+
+    public interface ChunkProcessor {
+        /**
+         * @param chunk    read-only, positioned at 0 with the chunk's length as its limit
+         * @param position offset of the chunk in the file
+         */
+        void processChunk(ByteBuffer chunk, long position);
+    }
+
+    private final int chunkBytes;
+    private final BufferPool pool;
+
+    public ChunkStream() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    public ChunkStream(int chunkBytes) {
+        if (chunkBytes <= 0 || WINDOW_BYTES % chunkBytes != 0) {
+            throw new IllegalArgumentException("Chunk size must divide " + WINDOW_BYTES + ": " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        this.pool = new BufferPool(chunkBytes, POOLED_BUFFERS);
+    }
+
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Reads the file in order into a pooled direct buffer, one chunk at a time.
+     */
+    public void read(File file, ChunkProcessor processor) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            long position = 0;
+            while (true) {
+                buffer.clear();
+                int read = FileStore.readFully(channel, buffer, position);
+                if (read == 0) {
+                    break;
+                }
+                view.clear();
+                view.limit(read);
+                processor.processChunk(view, position);
+                position += read;
+                if (read < chunkBytes) {
+                    break;
+                }
+            }
+        } finally {
+            raf.close();
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Visits the file in order through memory-mapped windows.
+     */
+    public void readMapped(File file, ChunkProcessor processor) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            for (long base = 0; base < size; base += WINDOW_BYTES) {
+                MappedByteBuffer window = map(channel, base, size);
+                for (int offset = 0; offset < window.capacity(); offset += chunkBytes) {
+                    processor.processChunk(slice(window, offset), base + offset);
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Visits all chunks on {@code executor}, in no particular order, and waits for them. The
+     * processor must be thread-safe. Whatever it throws is rethrown here.
+     */
+    public void readParallel(File file, ChunkProcessor processor, ExecutorService executor)
+            throws IOException, InterruptedException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            for (long base = 0; base < size; base += WINDOW_BYTES) {
+                MappedByteBuffer window = map(channel, base, size);
+                List<Callable<Void>> chunks = new ArrayList<>();
+                for (int offset = 0; offset < window.capacity(); offset += chunkBytes) {
+                    long position = base + offset;
+                    ByteBuffer chunk = slice(window, offset);
+                    chunks.add(() -> {
+                        processor.processChunk(chunk, position);
+                        return null;
+                    });
+                }
+                for (Future<Void> chunk : executor.invokeAll(chunks)) {
+                    try {
+                        chunk.get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long base, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW_BYTES, size - base));
+    }
+
+    private ByteBuffer slice(ByteBuffer window, int offset) {
+        ByteBuffer chunk = window.asReadOnlyBuffer();
+        chunk.position(offset);
+        chunk.limit(Math.min(window.capacity(), offset + chunkBytes));
+        return chunk.slice();
+    }
+}
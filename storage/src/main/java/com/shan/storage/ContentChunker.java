@@ -0,0 +1,69 @@
+package com.shan.storage;
+
+/**
+ * Content-defined chunking with a gear rolling hash (FastCDC). Boundaries depend only on the
+ * bytes just before them, so an edit moves at most the boundaries around it and every other
+ * chunk of the file comes out the same as before.
+ * <p>
+ * Chunks are 2 KB to 64 KB, about 8 KB on average. Normalized chunking (a stricter mask
+ * before the average size, a looser one after) keeps most of them close to that. The gear
+ * table is generated from a fixed seed, so stored boundaries stay valid across versions;
+ * changing any constant here would stop deduplication against existing snapshots.
+ */
+public final class ContentChunker {
+
+    public static final int MIN_BYTES = 2 * 1024;
+    public static final int AVERAGE_BYTES = 8 * 1024;
+    public static final int MAX_BYTES = 64 * 1024;
+
+    // 13 bits for 8 KB, plus and minus two for normalized chunking. The mask takes the top
+    // bits because those depend on the last 64 bytes, the low bits only on the last few.
+    private static final long MASK_STRICT = -1L << (64 - 15);
+    private static final long MASK_LOOSE = -1L << (64 - 11);
+
+    private static final long[] GEAR = gearTable(0x5348414E43444331L);
+
+    private ContentChunker() {
+    }
+
+    /**
+     * @return the length of the chunk that starts at {@code start}, at most {@code end - start}
+     */
+    public static int nextChunk(byte[] data, int start, int end) {
+        int available = end - start;
+        if (available <= MIN_BYTES) {
+            return available;
+        }
+        int limit = Math.min(available, MAX_BYTES);
+        int normal = Math.min(limit, AVERAGE_BYTES);
+        long hash = 0;
+        int i = MIN_BYTES;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[start + i] & 0xFF];
+            if ((hash & MASK_STRICT) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[start + i] & 0xFF];
+            if ((hash & MASK_LOOSE) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    // splitmix64, spelled out so the table never depends on a library's generator
+    private static long[] gearTable(long seed) {
+        long[] table = new long[256];
+        long state = seed;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,186 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares two files block by block.
+ * <p>
+ * Both files are memory-mapped a window at a time and compared eight bytes per step; only a
+ * word that differs is looked at byte by byte. When the SHA-256 of both files is already known
+ * and equal, the files are reported identical without reading them.
+ * <p>
+ * Not thread-safe; use one instance per thread.
+ */
+public class FileComparator {
+
+    private static final long WINDOW_BYTES = 8L * 1024 * 1024;
+
+    // Ranges kept for display; all of them are counted
+    private static final int MAX_RANGES = 20;
+
+    /**
+     * Provides a SHA-256 that is known to match the file's current contents
+     */
+    public interface HashSource {
+        /** @return the hex digest, or null if it is not known without reading the file */
+        String knownHash(File file);
+    }
+
+    public static class Result {
+        public boolean identical;
+
+        /** Offset of the first byte that differs, or -1 */
+        public long firstDifference = -1;
+
+        /** Maximal runs of differing bytes; bytes past the end of the shorter file are one run */
+        public long rangeCount;
+        public long differingBytes;
+
+        /** The first {@link #MAX_RANGES} runs as {start, end} with end exclusive */
+        public final List<long[]> ranges = new ArrayList<>();
+
+        /** Whether the result came from known hashes rather than from reading the files */
+        public boolean fromHashes;
+    }
+
+    private final HashSource hashSource;
+
+    // Start of the run being scanned, or -1; runs may cross window boundaries
+    private long rangeStart;
+    private Result result;
+    private boolean stopAtFirst;
+
+    /**
+     * @param hashSource known digests for the shortcut, or null to always read the files
+     */
+    public FileComparator(HashSource hashSource) {
+        this.hashSource = hashSource;
+    }
+
+    /**
+     * @param stopAtFirst stop reading at the first difference instead of counting all of them
+     */
+    public Result compare(File file1, File file2, boolean stopAtFirst) throws IOException {
+        this.result = new Result();
+        this.rangeStart = -1;
+        this.stopAtFirst = stopAtFirst;
+
+        long length1 = file1.length();
+        long length2 = file2.length();
+        if (length1 == length2 && hashSource != null) {
+            String hash1 = hashSource.knownHash(file1);
+            if (hash1 != null && hash1.equals(hashSource.knownHash(file2))) {
+                result.identical = true;
+                result.fromHashes = true;
+                return result;
+            }
+        }
+
+        RandomAccessFile raf1 = new RandomAccessFile(file1, "r");
+        RandomAccessFile raf2 = null;
+        try {
+            raf2 = new RandomAccessFile(file2, "r");
+            FileChannel channel1 = raf1.getChannel();
+            FileChannel channel2 = raf2.getChannel();
+            long common = Math.min(channel1.size(), channel2.size());
+            for (long position = 0; position < common; position += WINDOW_BYTES) {
+                int size = (int) Math.min(WINDOW_BYTES, common - position);
+                MappedByteBuffer window1 = channel1.map(FileChannel.MapMode.READ_ONLY, position, size);
+                MappedByteBuffer window2 = channel2.map(FileChannel.MapMode.READ_ONLY, position, size);
+                if (compareWindow(window1, window2, position, size)) {
+                    return finish();
+                }
+            }
+            // The tail of the longer file extends a run that reaches the end of the shorter one
+            long longer = Math.max(channel1.size(), channel2.size());
+            if (longer > common && rangeStart < 0) {
+                startRange(common);
+            }
+            if (rangeStart >= 0) {
+                endRange(longer);
+            }
+        } finally {
+            raf1.close();
+            if (raf2 != null) {
+                raf2.close();
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * @return true if comparison should stop
+     */
+    private boolean compareWindow(MappedByteBuffer window1, MappedByteBuffer window2, long base, int size) {
+        // Byte order only matters for where a word differs, and both sides use the same one
+        window1.order(ByteOrder.nativeOrder());
+        window2.order(ByteOrder.nativeOrder());
+        int words = size & ~7;
+        for (int i = 0; i < words; i += 8) {
+            if (window1.getLong(i) == window2.getLong(i)) {
+                if (rangeStart >= 0) {
+                    endRange(base + i);
+                }
+                continue;
+            }
+            for (int j = i; j < i + 8; j++) {
+                if (compareByte(window1, window2, base, j)) {
+                    return true;
+                }
+            }
+        }
+        for (int j = words; j < size; j++) {
+            if (compareByte(window1, window2, base, j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean compareByte(MappedByteBuffer window1, MappedByteBuffer window2, long base, int index) {
+        if (window1.get(index) == window2.get(index)) {
+            if (rangeStart >= 0) {
+                endRange(base + index);
+            }
+            return false;
+        }
+        if (rangeStart < 0) {
+            startRange(base + index);
+        }
+        if (stopAtFirst) {
+            endRange(base + index + 1);
+            return true;
+        }
+        return false;
+    }
+
+    private void startRange(long start) {
+        rangeStart = start;
+        if (result.firstDifference < 0) {
+            result.firstDifference = start;
+        }
+    }
+
+    private void endRange(long end) {
+        result.rangeCount++;
+        result.differingBytes += end - rangeStart;
+        if (result.ranges.size() < MAX_RANGES) {
+            result.ranges.add(new long[]{rangeStart, end});
+        }
+        rangeStart = -1;
+    }
+
+    private Result finish() {
+        result.identical = result.firstDifference < 0;
+        Result finished = result;
+        result = null;
+        return finished;
+    }
+}
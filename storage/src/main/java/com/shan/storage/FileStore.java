@@ -0,0 +1,160 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Blocking file primitives built on positional {@link FileChannel} reads and writes.
+ * Positional calls do not move the channel's position, so one channel can serve several
+ * threads at once.
+ */
+public final class FileStore {
+
+    // Largest array the VM reliably allocates
+    private static final long MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+
+    private FileStore() {
+    }
+
+    /**
+     * Reads the whole file into one array.
+     *
+     * @throws IOException if the file is too large for an array
+     */
+    public static byte[] readAll(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > MAX_ARRAY_BYTES) {
+                throw new IOException(file + " is too large to read at once (" + size + " bytes)");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFully(channel, buffer, 0);
+            return trimmed(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads up to {@code length} bytes starting at {@code position}; fewer if the file ends
+     * first, none if it ends before {@code position}.
+     */
+    public static byte[] readRange(File file, long position, int length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long available = Math.max(0, channel.size() - position);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, available));
+            readFully(channel, buffer, position);
+            return trimmed(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads from {@code position} until the buffer is full or the file ends.
+     *
+     * @return bytes read
+     */
+    public static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Writes all remaining bytes of the buffer at {@code position}, growing the file if needed.
+     */
+    public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Replaces the file's contents.
+     */
+    public static void write(File file, byte[] data) throws IOException {
+        write(file, data, false);
+    }
+
+    /**
+     * Replaces the file's contents and returns once they are on the storage device.
+     */
+    public static void writeSynced(File file, byte[] data) throws IOException {
+        write(file, data, true);
+    }
+
+    private static void write(File file, byte[] data, boolean sync) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            FileChannel channel = fos.getChannel();
+            writeFully(channel, ByteBuffer.wrap(data), 0);
+            if (sync) {
+                channel.force(false);
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Writes {@code data} at {@code position}, leaving the rest of the file as it is.
+     */
+    public static void write(File file, long position, ByteBuffer data) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            writeFully(raf.getChannel(), data, position);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public static void append(File file, byte[] data) throws IOException {
+        append(file, data, false);
+    }
+
+    /**
+     * Appends {@code data} and returns once it and the new file length are on the storage device.
+     */
+    public static void appendSynced(File file, byte[] data) throws IOException {
+        append(file, data, true);
+    }
+
+    private static void append(File file, byte[] data, boolean sync) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            writeFully(channel, ByteBuffer.wrap(data), channel.size());
+            if (sync) {
+                channel.force(true);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] trimmed(ByteBuffer buffer) {
+        if (buffer.position() == buffer.capacity()) {
+            return buffer.array();
+        }
+        // The file shrank while it was being read
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+}
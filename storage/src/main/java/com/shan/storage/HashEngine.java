@@ -0,0 +1,206 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes file digests on a background thread.
+ * <p>
+ * The file is memory-mapped a window at a time and every requested algorithm digests the
+ * same window on its own thread, so MD5, SHA-1 and SHA-256 together take one pass over the
+ * file and about as long as the slowest of them. Results are cached by path, size and
+ * modification time; asking again for an unchanged file costs nothing.
+ */
+public class HashEngine {
+
+    public static final String MD5 = "MD5";
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+
+    private static final long WINDOW_BYTES = 8L * 1024 * 1024;
+    private static final int CACHE_ENTRIES = 256;
+
+    /**
+     * All methods are called on the callback executor. Nothing is called after a cancel.
+     */
+    public interface Callback {
+        void onProgress(long bytesHashed, long totalBytes);
+
+        /** Hex digests keyed by algorithm, in the order they were requested */
+        void onHashed(Map<String, String> hashes);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * A running or queued hash job
+     */
+    public static class Task {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final Executor callbackExecutor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService digestPool = Executors.newFixedThreadPool(3);
+
+    // "path|size|mtime" -> algorithm -> hex
+    private final LruMap<String, Map<String, String>> cache = new LruMap<>(CACHE_ENTRIES);
+
+    public HashEngine(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public Task hash(File file, String[] algorithms, Callback callback) {
+        Task task = new Task();
+        executor.execute(() -> run(task, file, algorithms, callback));
+        return task;
+    }
+
+    /**
+     * @return the digest if this version of the file has been hashed before, otherwise null
+     */
+    public String getCached(File file, String algorithm) {
+        Map<String, String> known = cached(keyOf(file));
+        return known != null ? known.get(algorithm) : null;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        digestPool.shutdownNow();
+    }
+
+    private void run(Task task, File file, String[] algorithms, Callback callback) {
+        try {
+            String key = keyOf(file);
+            Map<String, String> known = cached(key);
+
+            List<String> missing = new ArrayList<>();
+            for (String algorithm : algorithms) {
+                if (known == null || !known.containsKey(algorithm)) {
+                    missing.add(algorithm);
+                }
+            }
+
+            Map<String, String> computed = missing.isEmpty() ?
+                    new LinkedHashMap<>() : digest(task, file, missing, callback);
+            if (computed == null) {
+                return;
+            }
+
+            Map<String, String> merged = new LinkedHashMap<>();
+            if (known != null) {
+                merged.putAll(known);
+            }
+            merged.putAll(computed);
+            synchronized (cache) {
+                cache.put(key, merged);
+            }
+
+            Map<String, String> result = new LinkedHashMap<>();
+            for (String algorithm : algorithms) {
+                result.put(algorithm, merged.get(algorithm));
+            }
+            post(task, () -> callback.onHashed(result));
+        } catch (Exception e) {
+            post(task, () -> callback.onError(e));
+        }
+    }
+
+    /**
+     * @return hex digests, or null if the task was cancelled
+     */
+    private Map<String, String> digest(Task task, File file, List<String> algorithms, Callback callback)
+            throws IOException, NoSuchAlgorithmException, InterruptedException, ExecutionException {
+        List<MessageDigest> digests = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            digests.add(MessageDigest.getInstance(algorithm));
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_BYTES) {
+                if (task.isCancelled()) {
+                    return null;
+                }
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_BYTES, size - position));
+
+                List<Callable<Void>> updates = new ArrayList<>();
+                for (MessageDigest digest : digests) {
+                    // Each digest reads the window through its own cursor
+                    updates.add(() -> {
+                        digest.update(window.duplicate());
+                        return null;
+                    });
+                }
+                for (Future<Void> update : digestPool.invokeAll(updates)) {
+                    update.get();
+                }
+
+                long hashed = Math.min(size, position + WINDOW_BYTES);
+                post(task, () -> callback.onProgress(hashed, size));
+            }
+        } finally {
+            raf.close();
+        }
+
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.size(); i++) {
+            hashes.put(algorithms.get(i), toHex(digests.get(i).digest()));
+        }
+        return hashes;
+    }
+
+    private Map<String, String> cached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private static String keyOf(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    private void post(Task task, Runnable runnable) {
+        callbackExecutor.execute(() -> {
+            if (!task.isCancelled()) {
+                runnable.run();
+            }
+        });
+    }
+
+    public static String toHex(byte[] hashBytes) {
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hashBytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads a file in fixed-size pages, e.g. for the hex viewer. Pages are read on demand with
+ * positional reads into one reused direct buffer and kept in a small LRU, so paging through
+ * a file of any size only ever holds a few hundred KB of it.
+ * <p>
+ * {@link #loadPage} and the listeners run on the callback executor, which must be a single
+ * thread (on Android, the main thread).
+ */
+public class PagedFileReader {
+
+    public static final int PAGE_BYTES = 4096;
+    private static final int CACHED_PAGES = 64;
+
+    public interface PageListener {
+        /** Called on the callback executor once the page is cached */
+        void onPageLoaded(int page);
+    }
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+    private final Executor callbackExecutor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Only used on the executor thread
+    private final ByteBuffer pageBuffer = ByteBuffer.allocateDirect(PAGE_BYTES);
+
+    // Guarded by itself
+    private final LruMap<Integer, byte[]> pages = new LruMap<>(CACHED_PAGES);
+
+    // Pages being read, with the listener waiting for each; callback thread only
+    private final Map<Integer, PageListener> loading = new HashMap<>();
+
+    public PagedFileReader(File file, Executor callbackExecutor) throws IOException {
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the page if it is cached, otherwise null
+     */
+    public byte[] getCachedPage(int page) {
+        synchronized (pages) {
+            return pages.get(page);
+        }
+    }
+
+    /**
+     * Reads the page in the background unless it is cached or already being read. Only the
+     * latest listener for a page is notified.
+     */
+    public void loadPage(int page, PageListener listener) {
+        if (getCachedPage(page) != null) {
+            listener.onPageLoaded(page);
+            return;
+        }
+        boolean queued = loading.containsKey(page);
+        loading.put(page, listener);
+        if (queued || executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            byte[] bytes = null;
+            try {
+                bytes = readPage(page);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            byte[] loaded = bytes;
+            callbackExecutor.execute(() -> {
+                PageListener waiting = loading.remove(page);
+                if (loaded != null) {
+                    synchronized (pages) {
+                        pages.put(page, loaded);
+                    }
+                    if (waiting != null) {
+                        waiting.onPageLoaded(page);
+                    }
+                }
+            });
+        });
+    }
+
+    public void close() {
+        executor.execute(() -> {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        executor.shutdown();
+    }
+
+    private byte[] readPage(int page) throws IOException {
+        long start = (long) page * PAGE_BYTES;
+        pageBuffer.clear();
+        pageBuffer.limit((int) Math.max(0, Math.min(PAGE_BYTES, size - start)));
+        FileStore.readFully(channel, pageBuffer, start);
+        pageBuffer.flip();
+        byte[] bytes = new byte[pageBuffer.remaining()];
+        pageBuffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,422 @@
+package com.shan.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Revision history of documents, deduplicated by content. Each snapshot is split with
+ * {@link ContentChunker} and every chunk is stored once, under its SHA-256, no matter how
+ * many revisions or documents contain it. A snapshot itself is one record appended to the
+ * document's manifest: the list of its chunks.
+ * <p>
+ * Saving a revision after an edit therefore writes the one or two chunks around the edit plus
+ * a manifest record of 36 bytes per chunk, about 0.5% of the document. Chunks are written
+ * through a temporary file and synced before the record that references them is appended,
+ * and the manifest is synced after it, so a crash leaves at worst an unreferenced chunk or a
+ * torn record at the end of a manifest, which is dropped. A manifest whose header is torn is
+ * treated as empty and rewritten by the next snapshot.
+ * <pre>
+ * root/chunks/ab/cdef...   chunk contents, named by hash
+ * root/manifests/...snap   per document: header, then one record per snapshot
+ * </pre>
+ * All methods block; call them off the main thread.
+ */
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final int VERSION = 1;
+    private static final int HASH_BYTES = 32;
+
+    public static class Snapshot {
+        /** When the snapshot was taken, in milliseconds since the epoch */
+        public final long time;
+        public final long length;
+        /** Bytes of new chunks this snapshot added to the store */
+        public final long storedBytes;
+        public final String contentHash;
+
+        final byte[][] chunkHashes;
+        final int[] chunkLengths;
+
+        Snapshot(long time, long length, long storedBytes, String contentHash,
+                 byte[][] chunkHashes, int[] chunkLengths) {
+            this.time = time;
+            this.length = length;
+            this.storedBytes = storedBytes;
+            this.contentHash = contentHash;
+            this.chunkHashes = chunkHashes;
+            this.chunkLengths = chunkLengths;
+        }
+
+        public int getChunkCount() {
+            return chunkHashes.length;
+        }
+    }
+
+    private final File chunkDir;
+    private final File manifestDir;
+
+    // Per document, so that taking a snapshot does not reread the whole manifest
+    private final Map<String, Tail> tails = new HashMap<>();
+
+    public SnapshotStore(File root) {
+        this.chunkDir = new File(root, "chunks");
+        this.manifestDir = new File(root, "manifests");
+    }
+
+    /**
+     * Records a new revision of the document.
+     *
+     * @return the snapshot, or null if the content is the same as the latest one
+     */
+    public synchronized Snapshot snapshot(String document, byte[] content) throws IOException {
+        File manifest = manifestFile(document);
+        Tail tail = tail(document, manifest);
+        String contentHash = HashEngine.toHex(sha256(content, 0, content.length));
+        if (contentHash.equals(tail.contentHash)) {
+            return null;
+        }
+
+        List<byte[]> hashes = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        long storedBytes = 0;
+        int offset = 0;
+        while (offset < content.length) {
+            int length = ContentChunker.nextChunk(content, offset, content.length);
+            byte[] hash = sha256(content, offset, length);
+            if (storeChunk(hash, content, offset, length)) {
+                storedBytes += length;
+            }
+            hashes.add(hash);
+            lengths.add(length);
+            offset += length;
+        }
+
+        int[] chunkLengths = new int[lengths.size()];
+        for (int i = 0; i < chunkLengths.length; i++) {
+            chunkLengths[i] = lengths.get(i);
+        }
+        Snapshot snapshot = new Snapshot(System.currentTimeMillis(), content.length, storedBytes,
+                contentHash, hashes.toArray(new byte[0][]), chunkLengths);
+
+        if (tail.manifestBytes == 0) {
+            manifestDir.mkdirs();
+            FileStore.writeSynced(manifest, encodeHeader(document));
+        }
+        FileStore.appendSynced(manifest, encodeRecord(snapshot));
+        tail.contentHash = contentHash;
+        tail.manifestBytes = manifest.length();
+        tail.count++;
+        return snapshot;
+    }
+
+    /**
+     * Cheaper than {@code list(document).size()}, which parses every record.
+     */
+    public synchronized int countSnapshots(String document) throws IOException {
+        return tail(document, manifestFile(document)).count;
+    }
+
+    /**
+     * @return the document's snapshots, oldest first
+     */
+    public synchronized List<Snapshot> list(String document) throws IOException {
+        return Collections.unmodifiableList(readManifest(manifestFile(document)).snapshots);
+    }
+
+    /**
+     * Reassembles a snapshot's content.
+     *
+     * @throws IOException if a chunk is missing or damaged
+     */
+    public synchronized byte[] read(Snapshot snapshot) throws IOException {
+        if (snapshot.length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Snapshot is too large to read at once (" + snapshot.length + " bytes)");
+        }
+        byte[] content = new byte[(int) snapshot.length];
+        int offset = 0;
+        for (int i = 0; i < snapshot.chunkHashes.length; i++) {
+            byte[] chunk = FileStore.readAll(chunkFile(snapshot.chunkHashes[i]));
+            if (chunk.length != snapshot.chunkLengths[i]
+                    || !Arrays.equals(sha256(chunk, 0, chunk.length), snapshot.chunkHashes[i])) {
+                throw new IOException("Chunk " + HashEngine.toHex(snapshot.chunkHashes[i]) + " is damaged");
+            }
+            System.arraycopy(chunk, 0, content, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return content;
+    }
+
+    /**
+     * Keeps only the newest {@code keep} snapshots of the document. Their chunks stay on disk
+     * until {@link #collectGarbage()}.
+     *
+     * @return the number of snapshots removed
+     */
+    public synchronized int prune(String document, int keep) throws IOException {
+        File manifest = manifestFile(document);
+        tails.remove(document);
+        List<Snapshot> snapshots = readManifest(manifest).snapshots;
+        int removed = Math.max(0, snapshots.size() - keep);
+        if (removed == 0) {
+            return 0;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(encodeHeader(document));
+        for (Snapshot snapshot : snapshots.subList(removed, snapshots.size())) {
+            out.write(encodeRecord(snapshot));
+        }
+        File temp = new File(manifestDir, manifest.getName() + ".tmp");
+        FileStore.writeSynced(temp, out.toByteArray());
+        if (!temp.renameTo(manifest)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + manifest);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes every chunk that no snapshot of any document references.
+     *
+     * @return the number of bytes freed
+     */
+    public synchronized long collectGarbage() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        File[] manifests = manifestDir.listFiles();
+        if (manifests != null) {
+            for (File manifest : manifests) {
+                if (!manifest.getName().endsWith(".snap")) {
+                    continue;
+                }
+                for (Snapshot snapshot : readManifest(manifest).snapshots) {
+                    for (byte[] hash : snapshot.chunkHashes) {
+                        referenced.add(HashEngine.toHex(hash));
+                    }
+                }
+            }
+        }
+
+        long freed = 0;
+        File[] prefixes = chunkDir.listFiles();
+        if (prefixes == null) {
+            return 0;
+        }
+        for (File prefix : prefixes) {
+            File[] chunks = prefix.listFiles();
+            if (chunks == null) {
+                continue;
+            }
+            for (File chunk : chunks) {
+                // Leftover temporary files are garbage too
+                String name = prefix.getName() + chunk.getName();
+                if (!referenced.contains(name)) {
+                    long length = chunk.length();
+                    if (chunk.delete()) {
+                        freed += length;
+                    }
+                }
+            }
+            prefix.delete(); // only succeeds once it is empty
+        }
+        return freed;
+    }
+
+    // ==================== CHUNKS ====================
+
+    /**
+     * @return true if the chunk was new and written, false if it was already stored
+     */
+    private boolean storeChunk(byte[] hash, byte[] content, int offset, int length) throws IOException {
+        File file = chunkFile(hash);
+        if (file.exists()) {
+            return false;
+        }
+        File dir = file.getParentFile();
+        dir.mkdirs();
+        File temp = new File(dir, file.getName() + ".tmp");
+        FileStore.writeSynced(temp, Arrays.copyOfRange(content, offset, offset + length));
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot store chunk " + file.getName());
+        }
+        return true;
+    }
+
+    private File chunkFile(byte[] hash) {
+        String hex = HashEngine.toHex(hash);
+        return new File(new File(chunkDir, hex.substring(0, 2)), hex.substring(2));
+    }
+
+    // ==================== MANIFESTS ====================
+
+    private static class Manifest {
+        final List<Snapshot> snapshots = new ArrayList<>();
+        // Length of the header and the complete records; 0 if there is no usable manifest
+        long validBytes;
+    }
+
+    private static class Tail {
+        String contentHash;
+        // 0 if the manifest has to be created
+        long manifestBytes;
+        int count;
+    }
+
+    private Tail tail(String document, File manifest) throws IOException {
+        Tail tail = tails.get(document);
+        if (tail == null || tail.manifestBytes != manifest.length()) {
+            tail = readTail(manifest);
+            tails.put(document, tail);
+        }
+        return tail;
+    }
+
+    private Tail readTail(File file) throws IOException {
+        Manifest manifest = readManifest(file);
+        Tail tail = new Tail();
+        if (manifest.validBytes > 0 && manifest.validBytes < file.length()) {
+            // Drop a record torn by a crash, or the next one would be unreadable after it
+            truncate(file, manifest.validBytes);
+        }
+        tail.manifestBytes = manifest.validBytes;
+        tail.count = manifest.snapshots.size();
+        if (!manifest.snapshots.isEmpty()) {
+            tail.contentHash = manifest.snapshots.get(manifest.snapshots.size() - 1).contentHash;
+        }
+        return tail;
+    }
+
+    private File manifestFile(String document) {
+        // The key may be any path or URI, so the name is derived from it
+        byte[] key = document.getBytes(StandardCharsets.UTF_8);
+        String hex = HashEngine.toHex(sha256(key, 0, key.length));
+        return new File(manifestDir, hex.substring(0, 32) + ".snap");
+    }
+
+    private Manifest readManifest(File file) throws IOException {
+        Manifest manifest = new Manifest();
+        if (!file.exists()) {
+            return manifest;
+        }
+        ByteBuffer in = ByteBuffer.wrap(FileStore.readAll(file));
+        try {
+            if (in.getInt() != MAGIC) {
+                // Torn header, e.g. zero-filled by a crash: nothing is usable
+                return manifest;
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                // Written by a newer release; rewriting it would lose that history
+                throw new IOException(file + " has unsupported manifest version " + version);
+            }
+            int keyBytes = in.getInt();
+            if (keyBytes < 0 || keyBytes > in.remaining()) {
+                // Torn header: nothing is usable
+                return manifest;
+            }
+            in.position(in.position() + keyBytes); // document key
+            manifest.validBytes = in.position();
+
+            while (in.hasRemaining()) {
+                long time = in.getLong();
+                long length = in.getLong();
+                long storedBytes = in.getLong();
+                byte[] contentHash = new byte[HASH_BYTES];
+                in.get(contentHash);
+                int count = in.getInt();
+                if (count < 0 || (long) count * (HASH_BYTES + 4) > in.remaining()) {
+                    break;
+                }
+                byte[][] hashes = new byte[count][HASH_BYTES];
+                int[] lengths = new int[count];
+                long total = 0;
+                for (int i = 0; i < count; i++) {
+                    in.get(hashes[i]);
+                    lengths[i] = in.getInt();
+                    total += lengths[i];
+                }
+                if (total != length || length < 0) {
+                    // Garbage where a record should be; read() could not reassemble it
+                    break;
+                }
+                manifest.snapshots.add(new Snapshot(time, length, storedBytes,
+                        HashEngine.toHex(contentHash), hashes, lengths));
+                manifest.validBytes = in.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // A torn last record, or a header cut short; everything before it is intact
+        }
+        return manifest;
+    }
+
+    private static byte[] encodeHeader(String document) throws IOException {
+        byte[] key = document.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + key.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(key.length);
+        out.write(key);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRecord(Snapshot snapshot) throws IOException {
+        int count = snapshot.chunkHashes.length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(60 + count * (HASH_BYTES + 4));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(snapshot.time);
+        out.writeLong(snapshot.length);
+        out.writeLong(snapshot.storedBytes);
+        out.write(fromHex(snapshot.contentHash));
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.write(snapshot.chunkHashes[i]);
+            out.writeInt(snapshot.chunkLengths[i]);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] sha256(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(HashEngine.SHA256);
+            digest.update(data, offset, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,44 @@
+package com.shan.storage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void releasedBufferIsReusedCleared() {
+        BufferPool pool = new BufferPool(1024, 2);
+        ByteBuffer buffer = pool.acquire();
+        buffer.putInt(42);
+        pool.release(buffer);
+
+        ByteBuffer again = pool.acquire();
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(1024, again.limit());
+        assertTrue(again.isDirect());
+    }
+
+    @Test
+    public void keepsAtMostMaxPooled() {
+        BufferPool pool = new BufferPool(16, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignBuffers() {
+        new BufferPool(16, 1).release(ByteBuffer.allocateDirect(32));
+    }
+}
@@ -0,0 +1,98 @@
+package com.shan.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_deliversEveryByteInOrder() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 1);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        byte[] copy = new byte[data.length];
+        long[] next = {0};
+        new ChunkStream().read(file, (chunk, position) -> {
+            assertEquals(next[0], position);
+            assertTrue(chunk.isReadOnly());
+            next[0] += chunk.remaining();
+            chunk.get(copy, (int) position, chunk.remaining());
+        });
+
+        assertEquals(data.length, next[0]);
+        assertArrayEquals(data, copy);
+    }
+
+    @Test
+    public void readMapped_deliversEveryByteInOrder() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 2);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        byte[] copy = new byte[data.length];
+        long[] next = {0};
+        new ChunkStream(4096).readMapped(file, (chunk, position) -> {
+            assertEquals(next[0], position);
+            assertTrue(chunk.remaining() <= 4096);
+            next[0] += chunk.remaining();
+            chunk.get(copy, (int) position, chunk.remaining());
+        });
+
+        assertEquals(data.length, next[0]);
+        assertArrayEquals(data, copy);
+    }
+
+    @Test
+    public void readParallel_coversTheFileOnce() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 3);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        byte[] copy = new byte[data.length];
+        int[] visits = new int[data.length / ChunkStream.DEFAULT_CHUNK_BYTES + 1];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new ChunkStream().readParallel(file, (chunk, position) -> {
+                // Chunks never overlap, so the threads write disjoint ranges
+                chunk.get(copy, (int) position, chunk.remaining());
+                synchronized (visits) {
+                    visits[(int) (position / ChunkStream.DEFAULT_CHUNK_BYTES)]++;
+                }
+            }, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(data, copy);
+        for (int count : visits) {
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    public void emptyFile_hasNoChunks() throws Exception {
+        File file = folder.newFile("empty.bin");
+        int[] chunks = {0};
+        ChunkStream stream = new ChunkStream();
+
+        stream.read(file, (chunk, position) -> chunks[0]++);
+        stream.readMapped(file, (chunk, position) -> chunks[0]++);
+
+        assertEquals(0, chunks[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeMustDivideTheWindow() {
+        new ChunkStream(3000);
+    }
+}
@@ -0,0 +1,79 @@
+package com.shan.storage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentChunkerTest {
+
+    @Test
+    public void chunksCoverTheInputWithinTheSizeBounds() {
+        byte[] data = TestFiles.randomBytes(4 * 1024 * 1024 + 7, 1);
+
+        List<Integer> lengths = chunk(data);
+
+        long total = 0;
+        for (int i = 0; i < lengths.size(); i++) {
+            int length = lengths.get(i);
+            assertTrue(length <= ContentChunker.MAX_BYTES);
+            // Only the last chunk may be short
+            assertTrue(i == lengths.size() - 1 || length >= ContentChunker.MIN_BYTES);
+            total += length;
+        }
+        assertEquals(data.length, total);
+        long average = total / lengths.size();
+        assertTrue("average " + average, average > ContentChunker.AVERAGE_BYTES / 2
+                && average < ContentChunker.AVERAGE_BYTES * 2);
+    }
+
+    @Test
+    public void anInsertOnlyChangesTheChunksAroundIt() {
+        byte[] data = TestFiles.randomBytes(1024 * 1024, 2);
+        byte[] edited = new byte[data.length + 10];
+        int at = data.length / 2;
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(data, at, edited, at + 10, data.length - at);
+
+        Set<String> before = chunkSet(data);
+        Set<String> after = chunkSet(edited);
+        after.removeAll(before);
+
+        assertTrue("new chunks: " + after.size(), after.size() <= 2);
+    }
+
+    @Test
+    public void smallInputIsOneChunk() {
+        byte[] data = TestFiles.randomBytes(100, 3);
+
+        assertEquals(100, ContentChunker.nextChunk(data, 0, data.length));
+        assertEquals(0, ContentChunker.nextChunk(data, data.length, data.length));
+    }
+
+    private static List<Integer> chunk(byte[] data) {
+        List<Integer> lengths = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            int length = ContentChunker.nextChunk(data, offset, data.length);
+            lengths.add(length);
+            offset += length;
+        }
+        return lengths;
+    }
+
+    // Chunks identified by offset-independent content
+    private static Set<String> chunkSet(byte[] data) {
+        Set<String> chunks = new HashSet<>();
+        int offset = 0;
+        for (int length : chunk(data)) {
+            chunks.add(new String(data, offset, length, java.nio.charset.StandardCharsets.ISO_8859_1));
+            offset += length;
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,99 @@
+package com.shan.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileComparatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FileComparator comparator = new FileComparator(null);
+
+    @Test
+    public void identicalLargeFiles() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 1);
+        File a = TestFiles.write(folder.getRoot(), "a.bin", data);
+        File b = TestFiles.write(folder.getRoot(), "b.bin", data);
+
+        FileComparator.Result result = comparator.compare(a, b, false);
+
+        assertTrue(result.identical);
+        assertEquals(-1, result.firstDifference);
+        assertEquals(0, result.rangeCount);
+        assertFalse(result.fromHashes);
+    }
+
+    @Test
+    public void runAcrossAWindowBoundaryIsOneRange() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 2);
+        byte[] changed = data.clone();
+        // Ends of two words, one on each side of the first window boundary, plus a lone byte
+        for (int i = TestFiles.WINDOW - 3; i < TestFiles.WINDOW + 5; i++) {
+            changed[i] ^= 0x55;
+        }
+        changed[data.length - 1] ^= 1;
+        File a = TestFiles.write(folder.getRoot(), "a.bin", data);
+        File b = TestFiles.write(folder.getRoot(), "b.bin", changed);
+
+        FileComparator.Result result = comparator.compare(a, b, false);
+
+        assertFalse(result.identical);
+        assertEquals(TestFiles.WINDOW - 3, result.firstDifference);
+        assertEquals(2, result.rangeCount);
+        assertEquals(9, result.differingBytes);
+        assertArrayEquals(new long[]{TestFiles.WINDOW - 3, TestFiles.WINDOW + 5}, result.ranges.get(0));
+        assertArrayEquals(new long[]{data.length - 1, data.length}, result.ranges.get(1));
+    }
+
+    @Test
+    public void stopAtFirstReportsOnlyTheFirstDifference() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 3);
+        byte[] changed = data.clone();
+        changed[1000] ^= 1;
+        changed[TestFiles.WINDOW + 1000] ^= 1;
+        File a = TestFiles.write(folder.getRoot(), "a.bin", data);
+        File b = TestFiles.write(folder.getRoot(), "b.bin", changed);
+
+        FileComparator.Result result = comparator.compare(a, b, true);
+
+        assertEquals(1000, result.firstDifference);
+        assertEquals(1, result.rangeCount);
+    }
+
+    @Test
+    public void longerFileTailIsADifference() throws Exception {
+        byte[] data = TestFiles.randomBytes(5000, 4);
+        byte[] longer = new byte[6000];
+        System.arraycopy(data, 0, longer, 0, data.length);
+        longer[4999] ^= 1;
+        File a = TestFiles.write(folder.getRoot(), "a.bin", data);
+        File b = TestFiles.write(folder.getRoot(), "b.bin", longer);
+
+        FileComparator.Result result = comparator.compare(a, b, false);
+
+        assertEquals(4999, result.firstDifference);
+        // The changed last byte and the extra tail form one run
+        assertEquals(1, result.rangeCount);
+        assertEquals(1001, result.differingBytes);
+    }
+
+    @Test
+    public void equalKnownHashesSkipReading() throws Exception {
+        File a = TestFiles.write(folder.getRoot(), "a.bin", TestFiles.randomBytes(100, 5));
+        File b = TestFiles.write(folder.getRoot(), "b.bin", TestFiles.randomBytes(100, 6));
+
+        FileComparator.Result result = new FileComparator(file -> "same").compare(a, b, false);
+
+        assertTrue(result.identical);
+        assertTrue(result.fromHashes);
+    }
+}
@@ -0,0 +1,72 @@
+package com.shan.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FileStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readAll_returnsLargeFileUnchanged() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 1);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        assertArrayEquals(data, FileStore.readAll(file));
+    }
+
+    @Test
+    public void readAll_emptyFile() throws Exception {
+        File file = folder.newFile("empty.bin");
+
+        assertEquals(0, FileStore.readAll(file).length);
+    }
+
+    @Test
+    public void readRange_isCutShortAtEndOfFile() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 2);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        long position = TestFiles.WINDOW - 10;
+        assertArrayEquals(Arrays.copyOfRange(data, (int) position, (int) position + 100),
+                FileStore.readRange(file, position, 100));
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 5, data.length),
+                FileStore.readRange(file, data.length - 5, 100));
+        assertEquals(0, FileStore.readRange(file, data.length + 10, 100).length);
+    }
+
+    @Test
+    public void positionalWrite_overwritesAndGrows() throws Exception {
+        byte[] data = TestFiles.randomBytes(1000, 3);
+        File file = TestFiles.write(folder.getRoot(), "data.bin", data);
+
+        byte[] patch = TestFiles.randomBytes(100, 4);
+        FileStore.write(file, 950, ByteBuffer.wrap(patch));
+
+        byte[] expected = Arrays.copyOf(data, 1050);
+        System.arraycopy(patch, 0, expected, 950, patch.length);
+        assertArrayEquals(expected, FileStore.readAll(file));
+    }
+
+    @Test
+    public void append_addsToTheEnd() throws Exception {
+        byte[] first = TestFiles.randomBytes(TestFiles.WINDOW + 1, 5);
+        byte[] second = TestFiles.randomBytes(777, 6);
+        File file = TestFiles.write(folder.getRoot(), "data.bin", first);
+
+        FileStore.append(file, second);
+
+        byte[] expected = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, expected, first.length, second.length);
+        assertArrayEquals(expected, FileStore.readAll(file));
+    }
+}
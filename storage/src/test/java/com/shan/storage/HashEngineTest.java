@@ -0,0 +1,107 @@
+package com.shan.storage;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HashEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Callbacks run on the engine's thread
+    private final HashEngine engine = new HashEngine(Runnable::run);
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void singlePassMatchesMessageDigest() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 1);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+
+        Map<String, String> hashes = hash(file, HashEngine.MD5, HashEngine.SHA1, HashEngine.SHA256);
+
+        for (String algorithm : new String[]{HashEngine.MD5, HashEngine.SHA1, HashEngine.SHA256}) {
+            String expected = HashEngine.toHex(MessageDigest.getInstance(algorithm).digest(data));
+            assertEquals(algorithm, expected, hashes.get(algorithm));
+        }
+    }
+
+    @Test
+    public void resultsAreCachedPerFileVersion() throws Exception {
+        File file = TestFiles.write(folder.getRoot(), "data.bin", TestFiles.randomBytes(1000, 2));
+        assertNull(engine.getCached(file, HashEngine.SHA256));
+
+        String first = hash(file, HashEngine.SHA256).get(HashEngine.SHA256);
+        assertEquals(first, engine.getCached(file, HashEngine.SHA256));
+
+        FileStore.append(file, new byte[]{1});
+        assertNull(engine.getCached(file, HashEngine.SHA256));
+    }
+
+    @Test
+    public void progressReachesTheFileSize() throws Exception {
+        File file = TestFiles.write(folder.getRoot(), "large.bin", TestFiles.randomBytes(TestFiles.LARGE, 3));
+        AtomicReference<Long> last = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        engine.hash(file, new String[]{HashEngine.MD5}, new HashEngine.Callback() {
+            @Override
+            public void onProgress(long bytesHashed, long totalBytes) {
+                assertEquals(TestFiles.LARGE, totalBytes);
+                last.set(bytesHashed);
+            }
+
+            @Override
+            public void onHashed(Map<String, String> hashes) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(TestFiles.LARGE), last.get());
+    }
+
+    private Map<String, String> hash(File file, String... algorithms) throws InterruptedException {
+        AtomicReference<Map<String, String>> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        engine.hash(file, algorithms, new HashEngine.Callback() {
+            @Override
+            public void onProgress(long bytesHashed, long totalBytes) {
+            }
+
+            @Override
+            public void onHashed(Map<String, String> hashes) {
+                result.set(hashes);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        return result.get();
+    }
+}
@@ -0,0 +1,73 @@
+package com.shan.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pagesMatchTheFile() throws Exception {
+        byte[] data = TestFiles.randomBytes(TestFiles.LARGE, 1);
+        File file = TestFiles.write(folder.getRoot(), "large.bin", data);
+        // Stands in for the main thread
+        ExecutorService callbacks = Executors.newSingleThreadExecutor();
+        PagedFileReader reader = new PagedFileReader(file, callbacks);
+        try {
+            int lastPage = (data.length - 1) / PagedFileReader.PAGE_BYTES;
+            int[] pages = {0, 1, TestFiles.WINDOW / PagedFileReader.PAGE_BYTES, lastPage};
+            for (int page : pages) {
+                assertArrayEquals(expectedPage(data, page), load(reader, callbacks, page));
+            }
+        } finally {
+            reader.close();
+            callbacks.shutdown();
+        }
+    }
+
+    @Test
+    public void pagesAreOnlyCachedOnceLoaded() throws Exception {
+        File file = TestFiles.write(folder.getRoot(), "data.bin", TestFiles.randomBytes(10000, 2));
+        ExecutorService callbacks = Executors.newSingleThreadExecutor();
+        PagedFileReader reader = new PagedFileReader(file, callbacks);
+        try {
+            assertNull(reader.getCachedPage(1));
+            load(reader, callbacks, 1);
+            assertNull(reader.getCachedPage(0));
+        } finally {
+            reader.close();
+            callbacks.shutdown();
+        }
+    }
+
+    private static byte[] load(PagedFileReader reader, ExecutorService callbacks, int page) throws Exception {
+        AtomicReference<byte[]> loaded = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        callbacks.execute(() -> reader.loadPage(page, p -> {
+            loaded.set(reader.getCachedPage(p));
+            done.countDown();
+        }));
+        assertTrue("page " + page + " was not loaded", done.await(10, TimeUnit.SECONDS));
+        return loaded.get();
+    }
+
+    private static byte[] expectedPage(byte[] data, int page) {
+        int start = page * PagedFileReader.PAGE_BYTES;
+        return Arrays.copyOfRange(data, start, Math.min(data.length, start + PagedFileReader.PAGE_BYTES));
+    }
+}
@@ -0,0 +1,230 @@
+package com.shan.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotStoreTest {
+
+    private static final String NOTE = "/notes/big.md";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void revisionsReadBackAndOnlyStoreWhatChanged() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] first = TestFiles.randomBytes(2 * 1024 * 1024, 1);
+        byte[] second = first.clone();
+        second[first.length / 3] ^= 1;
+
+        SnapshotStore.Snapshot a = store.snapshot(NOTE, first);
+        SnapshotStore.Snapshot b = store.snapshot(NOTE, second);
+
+        assertEquals(first.length, a.storedBytes);
+        assertNotNull(b);
+        assertTrue("stored " + b.storedBytes, b.storedBytes <= 2 * ContentChunker.MAX_BYTES);
+
+        // A fresh store reads everything from disk
+        List<SnapshotStore.Snapshot> snapshots = new SnapshotStore(folder.getRoot()).list(NOTE);
+        assertEquals(2, snapshots.size());
+        assertArrayEquals(first, store.read(snapshots.get(0)));
+        assertArrayEquals(second, store.read(snapshots.get(1)));
+    }
+
+    @Test
+    public void unchangedContentIsNotSnapshotted() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] data = TestFiles.randomBytes(50000, 2);
+
+        assertNotNull(store.snapshot(NOTE, data));
+        assertNull(store.snapshot(NOTE, data.clone()));
+        assertNull(new SnapshotStore(folder.getRoot()).snapshot(NOTE, data));
+        assertEquals(1, store.list(NOTE).size());
+        assertEquals(1, store.countSnapshots(NOTE));
+    }
+
+    @Test
+    public void copiesOfANoteShareChunks() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] data = TestFiles.randomBytes(300000, 3);
+
+        store.snapshot(NOTE, data);
+        SnapshotStore.Snapshot copy = store.snapshot("/notes/copy of big.md", data);
+
+        assertEquals(0, copy.storedBytes);
+        assertArrayEquals(data, store.read(copy));
+    }
+
+    @Test
+    public void emptyContent() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+
+        SnapshotStore.Snapshot snapshot = store.snapshot(NOTE, new byte[0]);
+
+        assertEquals(0, snapshot.getChunkCount());
+        assertEquals(0, store.read(store.list(NOTE).get(0)).length);
+    }
+
+    @Test
+    public void pruneAndCollectGarbageFreeOnlyUnreferencedChunks() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[][] revisions = new byte[5][];
+        for (int i = 0; i < revisions.length; i++) {
+            // Completely different each time, so every revision has its own chunks
+            revisions[i] = TestFiles.randomBytes(100000, 10 + i);
+            store.snapshot(NOTE, revisions[i]);
+        }
+        byte[] other = TestFiles.randomBytes(100000, 99);
+        store.snapshot("/notes/other.md", other);
+
+        assertEquals(3, store.prune(NOTE, 2));
+        long freed = store.collectGarbage();
+
+        assertEquals(3 * 100000, freed);
+        List<SnapshotStore.Snapshot> kept = store.list(NOTE);
+        assertEquals(2, kept.size());
+        assertArrayEquals(revisions[3], store.read(kept.get(0)));
+        assertArrayEquals(revisions[4], store.read(kept.get(1)));
+        assertArrayEquals(other, store.read(store.list("/notes/other.md").get(0)));
+        // Still appends after the rewrite
+        assertNotNull(store.snapshot(NOTE, revisions[0]));
+        assertEquals(3, store.list(NOTE).size());
+        assertEquals(3, store.countSnapshots(NOTE));
+    }
+
+    @Test
+    public void tornLastRecordIsDroppedAndOverwritten() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] first = TestFiles.randomBytes(40000, 4);
+        byte[] second = TestFiles.randomBytes(40000, 5);
+        byte[] third = TestFiles.randomBytes(40000, 6);
+        store.snapshot(NOTE, first);
+        store.snapshot(NOTE, second);
+
+        File manifest = onlyManifest();
+        RandomAccessFile raf = new RandomAccessFile(manifest, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        SnapshotStore reopened = new SnapshotStore(folder.getRoot());
+        assertEquals(1, reopened.list(NOTE).size());
+        reopened.snapshot(NOTE, third);
+
+        List<SnapshotStore.Snapshot> snapshots = reopened.list(NOTE);
+        assertEquals(2, snapshots.size());
+        assertArrayEquals(first, reopened.read(snapshots.get(0)));
+        assertArrayEquals(third, reopened.read(snapshots.get(1)));
+    }
+
+    @Test
+    public void tornHeaderIsTreatedAsEmpty() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] data = TestFiles.randomBytes(40000, 8);
+        store.snapshot(NOTE, TestFiles.randomBytes(40000, 9));
+
+        // Key length cut short, then a garbage one pointing past the end
+        File manifest = onlyManifest();
+        byte[] header = FileStore.readAll(manifest);
+        FileStore.write(manifest, Arrays.copyOf(header, 10));
+        assertEquals(0, new SnapshotStore(folder.getRoot()).list(NOTE).size());
+        header[8] = (byte) 0x7F;
+        FileStore.write(manifest, header);
+        assertEquals(0, new SnapshotStore(folder.getRoot()).list(NOTE).size());
+        header[8] = (byte) 0x80;
+        FileStore.write(manifest, header);
+        assertEquals(0, new SnapshotStore(folder.getRoot()).list(NOTE).size());
+
+        SnapshotStore reopened = new SnapshotStore(folder.getRoot());
+        assertNotNull(reopened.snapshot(NOTE, data));
+        List<SnapshotStore.Snapshot> snapshots = reopened.list(NOTE);
+        assertEquals(1, snapshots.size());
+        assertArrayEquals(data, reopened.read(snapshots.get(0)));
+    }
+
+    @Test
+    public void zeroFilledHeaderIsRewritten() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        store.snapshot(NOTE, TestFiles.randomBytes(40000, 12));
+
+        File manifest = onlyManifest();
+        FileStore.write(manifest, new byte[(int) manifest.length()]);
+
+        SnapshotStore reopened = new SnapshotStore(folder.getRoot());
+        assertEquals(0, reopened.list(NOTE).size());
+        byte[] data = TestFiles.randomBytes(40000, 13);
+        assertNotNull(reopened.snapshot(NOTE, data));
+        List<SnapshotStore.Snapshot> snapshots = new SnapshotStore(folder.getRoot()).list(NOTE);
+        assertEquals(1, snapshots.size());
+        assertArrayEquals(data, reopened.read(snapshots.get(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownVersionIsNotOverwritten() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        store.snapshot(NOTE, TestFiles.randomBytes(40000, 14));
+
+        File manifest = onlyManifest();
+        byte[] bytes = FileStore.readAll(manifest);
+        bytes[7] = 2;
+        FileStore.write(manifest, bytes);
+
+        new SnapshotStore(folder.getRoot()).snapshot(NOTE, TestFiles.randomBytes(40000, 15));
+    }
+
+    @Test
+    public void recordWithInconsistentLengthsIsDropped() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        byte[] first = TestFiles.randomBytes(40000, 10);
+        store.snapshot(NOTE, first);
+        store.snapshot(NOTE, TestFiles.randomBytes(40000, 11));
+
+        // Corrupt the second record's document length (the second long of the record)
+        File manifest = onlyManifest();
+        SnapshotStore.Snapshot last = store.list(NOTE).get(1);
+        long recordBytes = 60 + last.getChunkCount() * 36L;
+        byte[] bytes = FileStore.readAll(manifest);
+        bytes[(int) (bytes.length - recordBytes + 8)] ^= 0x40;
+        FileStore.write(manifest, bytes);
+
+        SnapshotStore reopened = new SnapshotStore(folder.getRoot());
+        List<SnapshotStore.Snapshot> snapshots = reopened.list(NOTE);
+        assertEquals(1, snapshots.size());
+        assertArrayEquals(first, reopened.read(snapshots.get(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void damagedChunkIsReported() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot());
+        SnapshotStore.Snapshot snapshot = store.snapshot(NOTE, TestFiles.randomBytes(5000, 7));
+
+        File[] prefixes = new File(folder.getRoot(), "chunks").listFiles();
+        File chunk = prefixes[0].listFiles()[0];
+        byte[] bytes = FileStore.readAll(chunk);
+        bytes[0] ^= 1;
+        FileStore.write(chunk, bytes);
+
+        store.read(snapshot);
+    }
+
+    private File onlyManifest() {
+        File[] manifests = new File(folder.getRoot(), "manifests").listFiles();
+        assertEquals(Arrays.toString(manifests), 1, manifests.length);
+        return manifests[0];
+    }
+}
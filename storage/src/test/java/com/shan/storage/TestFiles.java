@@ -0,0 +1,30 @@
+package com.shan.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Deterministic test data. Large files are a couple of mapping windows plus an odd tail, so
+ * every window boundary and the short last chunk are exercised.
+ */
+final class TestFiles {
+
+    static final int WINDOW = 8 * 1024 * 1024;
+    static final int LARGE = 2 * WINDOW + 12345;
+
+    private TestFiles() {
+    }
+
+    static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    static File write(File dir, String name, byte[] bytes) throws IOException {
+        File file = new File(dir, name);
+        FileStore.write(file, bytes);
+        return file;
+    }
+}
@@ -41,6 +41,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":storage"))
     implementation(libs.core.ktx)
     // Editor dependencies
     val editorVersion = "0.24.4"
@@ -57,6 +58,7 @@ dependencies {
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.constraintlayout)
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
 
     // Desugaring
     coreLibraryDesugaring("com.android.tools:desugar_jdk_libs:2.1.5")
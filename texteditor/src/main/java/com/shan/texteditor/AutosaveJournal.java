@@ -0,0 +1,405 @@
+package com.shan.texteditor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.shan.storage.FileStore;
+import com.shan.storage.HashEngine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only journal of the edits made to one document since it was last saved.
+ * <p>
+ * Edits are batched in memory and appended to the journal after a short idle period, which
+ * is far cheaper than rewriting the document. Once enough has accumulated the owner is asked
+ * to save the document (a checkpoint), after which the journalled edits are dropped. If the
+ * process dies before that, {@link #replay(int, Replayer)} re-applies the edits on top of the
+ * saved file on the next launch.
+ * <p>
+ * Each checkpoint seals the current segment file and starts a new one, so a save only ever
+ * deletes the edits its own snapshot covers. Every segment starts with the length of the
+ * document its edits apply to, and replay stops before a segment that does not match.
+ * <p>
+ * Recording and checkpoints must be driven from the main thread; file I/O happens on the
+ * journal's own executor.
+ */
+public class AutosaveJournal {
+
+    private static final long FLUSH_DELAY_MS = 1000;
+    private static final long COMPACT_INTERVAL_MS = 30 * 1000;
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_REPLACE = 3;
+
+    private static final int SEGMENT_MAGIC = 0x4a524e31; // "JRN1"
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    public interface Listener {
+        /** The journal has grown enough that the document should be saved. Main thread. */
+        void onCompactionDue();
+    }
+
+    /**
+     * Applies journalled edits. Indices are char offsets into the document.
+     */
+    public interface Replayer {
+        void insert(int index, String text);
+
+        void delete(int index, int length);
+
+        void replace(String text);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler;
+    private final Listener listener;
+
+    // Segments are numbered in order. Edits since the last checkpoint go to the active one;
+    // a checkpoint seals it, and it is deleted once that checkpoint's save has succeeded.
+    private final File directory;
+    private final String name;
+    // Segments a previous session left behind, oldest first
+    private final List<File> recoverable;
+
+    // Main thread state
+    private long activeSegment;
+    // Length of the document the active segment's edits apply to, -1 until known
+    private int segmentBase = -1;
+    private boolean segmentStarted;
+    private ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    private DataOutputStream batch = new DataOutputStream(batchBytes);
+    private long journalBytes;
+    private long lastCompaction = SystemClock.elapsedRealtime();
+    private boolean compactionRequested;
+
+    private final Runnable flushRunnable = this::flush;
+
+    public AutosaveJournal(File directory, String documentKey, Handler mainHandler, Listener listener) {
+        this.mainHandler = mainHandler;
+        this.listener = listener;
+        directory.mkdirs();
+        this.directory = directory;
+        this.name = hash(documentKey);
+        this.recoverable = listSegments(directory, name, Long.MAX_VALUE);
+        this.activeSegment = recoverable.isEmpty() ? 0 : sequenceOf(recoverable.get(recoverable.size() - 1)) + 1;
+    }
+
+    /**
+     * Call once the document is loaded (and any recovered edits replayed). Edits recorded
+     * from now on apply to a document of this length; until then they are only kept in memory.
+     */
+    public void start(int documentLength) {
+        segmentBase = documentLength;
+        flush();
+    }
+
+    // ==================== RECORDING ====================
+
+    public void recordInsert(int index, CharSequence text) {
+        try {
+            batch.writeByte(OP_INSERT);
+            batch.writeInt(index);
+            writeText(text);
+        } catch (IOException e) {
+            // Writes to a ByteArrayOutputStream do not fail
+            throw new IllegalStateException(e);
+        }
+        scheduleFlush();
+    }
+
+    public void recordDelete(int index, int length) {
+        try {
+            batch.writeByte(OP_DELETE);
+            batch.writeInt(index);
+            batch.writeInt(length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        scheduleFlush();
+    }
+
+    public void recordReplace(CharSequence text) {
+        try {
+            batch.writeByte(OP_REPLACE);
+            writeText(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        scheduleFlush();
+    }
+
+    private void writeText(CharSequence text) throws IOException {
+        batch.writeInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            batch.writeChar(text.charAt(i));
+        }
+    }
+
+    private void scheduleFlush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        mainHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+    }
+
+    /**
+     * Appends the batched edits to the journal now instead of waiting for the idle delay.
+     */
+    public void flush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        if (batchBytes.size() == 0 || segmentBase < 0) {
+            return;
+        }
+        byte[] records = batchBytes.toByteArray();
+        batchBytes = new ByteArrayOutputStream();
+        batch = new DataOutputStream(batchBytes);
+
+        byte[] data = records;
+        if (!segmentStarted) {
+            data = withHeader(segmentBase, records);
+            segmentStarted = true;
+        }
+        File segment = segmentFile(activeSegment);
+        byte[] append = data;
+        executor.execute(() -> append(segment, append));
+
+        journalBytes += records.length;
+        if (!compactionRequested && (journalBytes >= COMPACT_BYTES
+                || SystemClock.elapsedRealtime() - lastCompaction >= COMPACT_INTERVAL_MS)) {
+            compactionRequested = true;
+            listener.onCompactionDue();
+        }
+    }
+
+    private static void append(File file, byte[] data) {
+        try {
+            // Not synced: the journal protects against process death, not power loss
+            FileStore.append(file, data);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ==================== CHECKPOINTS ====================
+
+    /**
+     * Call right before taking the snapshot that is about to be saved. Everything journalled
+     * up to now is covered by that snapshot.
+     *
+     * @param documentLength length of the snapshot, which later edits apply to
+     * @return the checkpoint to pass to {@link #endCheckpoint(long, boolean)}
+     */
+    public long beginCheckpoint(int documentLength) {
+        flush();
+        // Edits that could not be journalled yet are in the snapshot as well
+        batchBytes.reset();
+        compactionRequested = false;
+        lastCompaction = SystemClock.elapsedRealtime();
+        journalBytes = 0;
+
+        long checkpoint = activeSegment;
+        activeSegment++;
+        segmentBase = documentLength;
+        segmentStarted = false;
+        return checkpoint;
+    }
+
+    /**
+     * Call once the checkpoint snapshot has been written (or failed to be). A saved snapshot
+     * also covers the segments of earlier checkpoints whose saves failed, so those go too;
+     * segments of later checkpoints are left alone.
+     */
+    public void endCheckpoint(long checkpoint, boolean saved) {
+        if (saved) {
+            executor.execute(() -> {
+                for (File segment : listSegments(directory, name, checkpoint)) {
+                    segment.delete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops every journalled edit, e.g. when the user closes without saving.
+     */
+    public void discard() {
+        mainHandler.removeCallbacks(flushRunnable);
+        batchBytes.reset();
+        journalBytes = 0;
+        recoverable.clear();
+        segmentStarted = false;
+        activeSegment++;
+        long last = activeSegment;
+        executor.execute(() -> {
+            for (File segment : listSegments(directory, name, last)) {
+                segment.delete();
+            }
+        });
+    }
+
+    /**
+     * Flushes outstanding edits and stops the journal thread once they are written.
+     */
+    public void close() {
+        flush();
+        executor.shutdown();
+    }
+
+    // ==================== RECOVERY ====================
+
+    /**
+     * Whether a previous session left edits behind that were never saved.
+     */
+    public boolean hasRecoverableChanges() {
+        for (File segment : recoverable) {
+            if (segment.length() > HEADER_BYTES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-applies the journalled edits of the previous session in order. A record cut short by
+     * a crash ends the replay. Call before {@link #start(int)}.
+     *
+     * @param documentLength length of the document as loaded from the file
+     * @throws IOException if a segment was written against a different version of the file,
+     *                     e.g. because it changed outside the editor; the segments before it
+     *                     have been applied
+     */
+    public void replay(int documentLength, Replayer replayer) throws IOException {
+        int length = documentLength;
+        for (File segment : recoverable) {
+            length = replaySegment(segment, length, replayer);
+        }
+    }
+
+    // Returns the document length after the segment's edits
+    private static int replaySegment(File segment, int length, Replayer replayer) throws IOException {
+        if (segment.length() < HEADER_BYTES) {
+            // Torn while the header was written, so there are no edits in it
+            return length;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+        try {
+            if (in.readInt() != SEGMENT_MAGIC) {
+                throw new IOException("Corrupt journal segment " + segment.getName());
+            }
+            int base = in.readInt();
+            if (base != length) {
+                throw new IOException("The file changed after these edits were made");
+            }
+            while (true) {
+                byte op = in.readByte();
+                switch (op) {
+                    case OP_INSERT: {
+                        int index = in.readInt();
+                        String text = readText(in);
+                        replayer.insert(index, text);
+                        length += text.length();
+                        break;
+                    }
+                    case OP_DELETE: {
+                        int index = in.readInt();
+                        int deleted = in.readInt();
+                        replayer.delete(index, deleted);
+                        length -= deleted;
+                        break;
+                    }
+                    case OP_REPLACE: {
+                        String text = readText(in);
+                        replayer.replace(text);
+                        length = text.length();
+                        break;
+                    }
+                    default:
+                        throw new IOException("Corrupt journal record " + op);
+                }
+            }
+        } catch (EOFException e) {
+            // End of the segment, or a record that was only partially written
+            return length;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private static byte[] withHeader(int base, byte[] records) {
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + records.length);
+        data.putInt(SEGMENT_MAGIC).putInt(base).put(records);
+        return data.array();
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, name + "." + sequence + SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(File segment) {
+        String fileName = segment.getName();
+        int start = fileName.indexOf('.') + 1;
+        return Long.parseLong(fileName.substring(start, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Segments of the document numbered up to {@code last}, oldest first
+     */
+    private static List<File> listSegments(File directory, String name, long last) {
+        List<File> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            String prefix = name + ".";
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.startsWith(prefix) && fileName.endsWith(SEGMENT_SUFFIX)
+                        && fileName.indexOf('.', prefix.length()) == fileName.length() - SEGMENT_SUFFIX.length()) {
+                    try {
+                        if (sequenceOf(file) <= last) {
+                            segments.add(file);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        Collections.sort(segments, (a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return segments;
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HashEngine.toHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.shan.texteditor;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes a document on a background executor and hands it to the UI thread in chunks.
+ * The first chunk is kept small so the editor can show (and edit) the top of the file
+ * long before the rest of it has been read.
+ * <p>
+ * The encoding, BOM and line terminator are detected from the start of the stream and
+ * reported as a {@link TextFormat}. The decoded text keeps the original terminators.
+ * Bytes that turn out not to be valid in that encoding further into the file are shown as
+ * U+FFFD, and {@link Callback#onComplete(boolean)} reports that the text is not a lossless
+ * copy of the file.
+ */
+public class DocumentLoader {
+
+    private static final int FIRST_CHUNK_CHARS = 16 * 1024;
+    private static final int CHUNK_CHARS = 256 * 1024;
+
+    // Bytes inspected to detect the text format
+    private static final int SNIFF_BYTES = 64 * 1024;
+
+    /**
+     * Opens the stream to decode. Called on the loader thread.
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Receives the decoded document. All methods are called on the callback executor,
+     * which the editor points at its main thread.
+     */
+    public interface Callback {
+        /** Replaces the editor content with the start of the document */
+        void onFirstChunk(String text, TextFormat format);
+
+        /** Appends the next part of the document */
+        void onChunk(String text);
+
+        /** totalBytes is -1 when the size of the source is unknown */
+        void onProgress(long bytesRead, long totalBytes);
+
+        /** lossy is true if some bytes could not be decoded and were replaced by U+FFFD */
+        void onComplete(boolean lossy);
+
+        void onError(IOException e);
+    }
+
+    private final Executor executor;
+    private final Executor callbackExecutor;
+
+    // Bumped on every load/cancel so that stale tasks stop posting results
+    private volatile int generation;
+
+    public DocumentLoader(Executor executor, Executor callbackExecutor) {
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public void load(Source source, long totalBytes, Callback callback) {
+        final int token = ++generation;
+        executor.execute(() -> decode(token, source, totalBytes, callback));
+    }
+
+    /**
+     * Stops delivering chunks of the current load, if any.
+     */
+    public void cancel() {
+        generation++;
+    }
+
+    private boolean isStale(int token) {
+        return token != generation;
+    }
+
+    private void decode(int token, Source source, long totalBytes, Callback callback) {
+        CountingInputStream in = null;
+        try {
+            in = new CountingInputStream(source.open());
+            BufferedInputStream buffered = new BufferedInputStream(in, SNIFF_BYTES);
+            TextFormat format = sniff(buffered);
+            ReplacingReader reader = new ReplacingReader(buffered, format.getCharset().newDecoder());
+
+            char[] buffer = new char[CHUNK_CHARS];
+            int limit = FIRST_CHUNK_CHARS;
+            int filled = 0;
+            boolean first = true;
+            int read;
+
+            while ((read = reader.read(buffer, filled, limit - filled)) != -1) {
+                if (isStale(token)) {
+                    return;
+                }
+                filled += read;
+                if (filled < limit) {
+                    continue;
+                }
+
+                // Never split a CRLF pair or a surrogate pair across two chunks
+                int cut = filled;
+                char last = buffer[cut - 1];
+                if (last == '\r' || Character.isHighSurrogate(last)) {
+                    cut--;
+                }
+
+                dispatch(token, new String(buffer, 0, cut), first ? format : null,
+                        in.count, totalBytes, callback);
+                first = false;
+                limit = CHUNK_CHARS;
+
+                filled -= cut;
+                if (filled > 0) {
+                    buffer[0] = buffer[cut];
+                }
+            }
+
+            if (filled > 0 || first) {
+                dispatch(token, new String(buffer, 0, filled), first ? format : null,
+                        in.count, totalBytes, callback);
+            }
+
+            boolean lossy = reader.replaced > 0;
+            callbackExecutor.execute(() -> {
+                if (!isStale(token)) {
+                    callback.onComplete(lossy);
+                }
+            });
+        } catch (IOException e) {
+            callbackExecutor.execute(() -> {
+                if (!isStale(token)) {
+                    callback.onError(e);
+                }
+            });
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Detects the format from the head of the stream and leaves the stream positioned
+     * after the BOM, if any.
+     */
+    private static TextFormat sniff(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        in.mark(SNIFF_BYTES);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+            length += read;
+        }
+        in.reset();
+
+        TextFormat format = TextFormat.detect(head, length);
+        long toSkip = format.getBomLength();
+        while (toSkip > 0) {
+            toSkip -= in.skip(toSkip);
+        }
+        return format;
+    }
+
+    // format is only set for the first chunk
+    private void dispatch(int token, String text, TextFormat format, long bytesRead,
+                          long totalBytes, Callback callback) {
+        callbackExecutor.execute(() -> {
+            if (isStale(token)) {
+                return;
+            }
+            if (format != null) {
+                callback.onFirstChunk(text, format);
+            } else {
+                callback.onChunk(text);
+            }
+            callback.onProgress(bytesRead, totalBytes);
+        });
+    }
+
+    /**
+     * Decodes like InputStreamReader, replacing malformed input with U+FFFD, but counts the
+     * replacements so a lossy decode is not mistaken for the file's content
+     */
+    private static class ReplacingReader extends Reader {
+        private final InputStream in;
+        private final CharsetDecoder decoder;
+        private final ByteBuffer bytes = ByteBuffer.allocate(8 * 1024);
+        private boolean endOfInput;
+        private boolean flushed;
+        int replaced;
+
+        ReplacingReader(InputStream in, CharsetDecoder decoder) {
+            this.in = in;
+            this.decoder = decoder
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            bytes.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (out.hasRemaining() && !flushed) {
+                CoderResult result = decoder.decode(bytes, out, endOfInput);
+                if (result.isError()) {
+                    bytes.position(bytes.position() + result.length());
+                    out.put('\uFFFD');
+                    replaced++;
+                } else if (result.isOverflow()) {
+                    break;
+                } else if (endOfInput) {
+                    if (decoder.flush(out).isOverflow()) {
+                        break;
+                    }
+                    flushed = true;
+                } else if (out.position() > off) {
+                    // Hand out what is decoded rather than block for more input
+                    break;
+                } else {
+                    fill();
+                }
+            }
+            int read = out.position() - off;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        private void fill() throws IOException {
+            bytes.compact();
+            int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+            if (read == -1) {
+                endOfInput = true;
+            } else {
+                bytes.position(bytes.position() + read);
+            }
+            bytes.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Tracks how many bytes have been consumed so progress can be reported against the file size
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
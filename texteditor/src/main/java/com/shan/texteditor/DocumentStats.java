@@ -0,0 +1,177 @@
+package com.shan.texteditor;
+
+import io.github.rosemoe.sora.event.ContentChangeEvent;
+import io.github.rosemoe.sora.text.Content;
+
+/**
+ * Line, character, word and heading counts of the editor content, kept up to date from
+ * {@link ContentChangeEvent}s. Each event only rescans the lines it touched, so reading the
+ * statistics is constant-time and never copies the document.
+ * <p>
+ * Headings are ATX headings ({@code # Title}); a {@code #} line inside a fenced code block is
+ * counted too, since telling them apart would need a rescan of everything above the edit.
+ * Must be used on the main thread.
+ */
+public class DocumentStats {
+
+    private static final int WORDS_PER_MINUTE = 200;
+
+    // Per line: word count << 1 | heading flag
+    private int[] lineInfo = new int[256];
+    private int lineCount;
+
+    private long characters;
+    private long words;
+    private int headings;
+
+    /**
+     * Updates the counts for one change of the editor content.
+     */
+    public void onContentChanged(ContentChangeEvent event) {
+        Content content = event.getEditor().getText();
+        DocumentWriter.Lines lines = DocumentWriter.linesOf(content);
+        int startLine = event.getChangeStart().line;
+        int endLine = event.getChangeEnd().line;
+
+        switch (event.getAction()) {
+            case ContentChangeEvent.ACTION_INSERT:
+                onInsert(lines, startLine, endLine, event.getChangedText().length());
+                break;
+            case ContentChangeEvent.ACTION_DELETE:
+                onDelete(lines, startLine, endLine, event.getChangedText().length());
+                break;
+            default:
+                reset(lines, content.length());
+                break;
+        }
+    }
+
+    /**
+     * Recounts everything, e.g. after the editor was given a new {@link Content}.
+     */
+    public void reset(Content content) {
+        reset(DocumentWriter.linesOf(content), content.length());
+    }
+
+    // The start line was split into startLine..endLine
+    void onInsert(DocumentWriter.Lines lines, int startLine, int endLine, int insertedChars) {
+        characters += insertedChars;
+        forget(startLine, startLine + 1);
+        insertLines(startLine + 1, endLine - startLine);
+        rescan(lines, startLine, endLine + 1);
+    }
+
+    // startLine..endLine were merged into startLine
+    void onDelete(DocumentWriter.Lines lines, int startLine, int endLine, int deletedChars) {
+        characters -= deletedChars;
+        forget(startLine, endLine + 1);
+        removeLines(startLine + 1, endLine - startLine);
+        rescan(lines, startLine, startLine + 1);
+    }
+
+    void reset(DocumentWriter.Lines lines, long length) {
+        lineCount = 0;
+        words = 0;
+        headings = 0;
+        characters = length;
+        insertLines(0, lines.getLineCount());
+        rescan(lines, 0, lineCount);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public long getCharacterCount() {
+        return characters;
+    }
+
+    public long getWordCount() {
+        return words;
+    }
+
+    public int getHeadingCount() {
+        return headings;
+    }
+
+    /**
+     * Estimated reading time in whole minutes, at least 1 for a non-empty document
+     */
+    public long getReadingMinutes() {
+        return words == 0 ? 0 : Math.max(1, (words + WORDS_PER_MINUTE / 2) / WORDS_PER_MINUTE);
+    }
+
+    // Subtracts lines [from, to) from the totals
+    private void forget(int from, int to) {
+        for (int i = from; i < to && i < lineCount; i++) {
+            words -= lineInfo[i] >>> 1;
+            headings -= lineInfo[i] & 1;
+            lineInfo[i] = 0;
+        }
+    }
+
+    // Counts lines [from, to) and adds them to the totals
+    private void rescan(DocumentWriter.Lines lines, int from, int to) {
+        for (int i = from; i < to && i < lineCount; i++) {
+            CharSequence line = lines.getLine(i);
+            int lineWords = countWords(line);
+            int heading = isHeading(line) ? 1 : 0;
+            lineInfo[i] = lineWords << 1 | heading;
+            words += lineWords;
+            headings += heading;
+        }
+    }
+
+    private void insertLines(int at, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (lineCount + count > lineInfo.length) {
+            int[] grown = new int[Math.max(lineInfo.length * 2, lineCount + count)];
+            System.arraycopy(lineInfo, 0, grown, 0, lineCount);
+            lineInfo = grown;
+        }
+        System.arraycopy(lineInfo, at, lineInfo, at + count, lineCount - at);
+        for (int i = at; i < at + count; i++) {
+            lineInfo[i] = 0;
+        }
+        lineCount += count;
+    }
+
+    private void removeLines(int at, int count) {
+        if (count <= 0) {
+            return;
+        }
+        System.arraycopy(lineInfo, at + count, lineInfo, at, lineCount - at - count);
+        lineCount -= count;
+    }
+
+    private static int countWords(CharSequence line) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            // Apostrophes inside a word ("don't") do not start a new one
+            boolean wordChar = Character.isLetterOrDigit(c) || (inWord && (c == '\'' || c == '\u2019'));
+            if (wordChar && !inWord) {
+                count++;
+            }
+            inWord = wordChar;
+        }
+        return count;
+    }
+
+    private static boolean isHeading(CharSequence line) {
+        int i = 0;
+        int length = line.length();
+        while (i < length && i < 3 && line.charAt(i) == ' ') {
+            i++;
+        }
+        int hashes = 0;
+        while (i < length && line.charAt(i) == '#') {
+            hashes++;
+            i++;
+        }
+        return hashes >= 1 && hashes <= 6 && (i == length || line.charAt(i) == ' ' || line.charAt(i) == '\t');
+    }
+}
@@ -0,0 +1,125 @@
+package com.shan.texteditor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import io.github.rosemoe.sora.text.Content;
+
+/**
+ * Streams a document to an output stream line by line through one reusable byte buffer,
+ * writing back the BOM, encoding and per-line terminators recorded in a {@link TextFormat}.
+ * The document is never copied into a single String or byte array.
+ * <p>
+ * Text the charset cannot represent is not replaced: {@link #write} fails with a
+ * {@link CharacterCodingException} instead, so a save never silently loses characters.
+ */
+public class DocumentWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Line-oriented view of a document
+     */
+    public interface Lines {
+        int getLineCount();
+
+        CharSequence getLine(int line);
+
+        /** Terminator of the given line, empty for the last one */
+        CharSequence getLineSeparator(int line);
+    }
+
+    public static Lines linesOf(Content content) {
+        return new Lines() {
+            @Override
+            public int getLineCount() {
+                return content.getLineCount();
+            }
+
+            @Override
+            public CharSequence getLine(int line) {
+                return content.getLine(line);
+            }
+
+            @Override
+            public CharSequence getLineSeparator(int line) {
+                return content.getLine(line).getLineSeparator().getContent();
+            }
+        };
+    }
+
+    /**
+     * Encodes the document into {@code out}. Does not close the stream.
+     *
+     * @return number of bytes written
+     * @throws CharacterCodingException if the document contains text the format's charset
+     *                                  cannot encode; part of it may already be written
+     */
+    public static long write(Lines lines, TextFormat format, OutputStream out) throws IOException {
+        CharsetEncoder encoder = format.getCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long written = 0;
+
+        buffer.put(format.getBom());
+
+        int count = lines.getLineCount();
+        for (int i = 0; i < count; i++) {
+            written += encode(encoder, CharBuffer.wrap(lines.getLine(i)), buffer, out, false);
+            written += encode(encoder, CharBuffer.wrap(lines.getLineSeparator(i)), buffer, out, false);
+        }
+        written += encode(encoder, CharBuffer.allocate(0), buffer, out, true);
+
+        while (encoder.flush(buffer).isOverflow()) {
+            written += drain(buffer, out);
+        }
+        written += drain(buffer, out);
+        out.flush();
+        return written;
+    }
+
+    private static long encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer buffer,
+                               OutputStream out, boolean endOfInput) throws IOException {
+        long written = 0;
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                written += drain(buffer, out);
+            } else {
+                return written;
+            }
+        }
+    }
+
+    /**
+     * Encodes the document without writing it, failing the same way {@link #write} would
+     */
+    public static void checkEncodable(Lines lines, TextFormat format) throws IOException {
+        write(lines, format, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    private static long drain(ByteBuffer buffer, OutputStream out) throws IOException {
+        int length = buffer.position();
+        out.write(buffer.array(), 0, length);
+        buffer.clear();
+        return length;
+    }
+}
@@ -0,0 +1,219 @@
+package com.shan.texteditor;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.shan.storage.FileStore;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide latency histograms for the editor, one per measured operation.
+ * <p>
+ * Work that starts and ends on one thread is measured with a {@link Section}, which also
+ * shows up in system traces (Perfetto, systrace). Work that ends in a callback, like a load
+ * or a save, is measured with a {@link Span}, which is an async trace section on API 29+.
+ * The numbers survive activity restarts and can be dumped as JSON with {@link #exportJson}.
+ */
+public final class EditorMetrics {
+
+    public static final String HANDLE_INTENT = "handleIntent";
+    public static final String SETUP_TEXTMATE = "setupTextMate";
+    public static final String SETUP_EDITOR = "setupEditor";
+    // From opening a document until its first chunk is in the editor, and until all of it is
+    public static final String OPEN_FIRST_CHUNK = "open.firstChunk";
+    public static final String OPEN = "open";
+    // From requesting a preview until its blocks are handed to the list
+    public static final String PREVIEW = "preview";
+    // The main-thread part of a save, and the whole save until it is on disk
+    public static final String SAVE_CURRENT_FILE = "saveCurrentFile";
+    public static final String SAVE = "save";
+
+    private static final EditorMetrics INSTANCE = new EditorMetrics();
+
+    // Guarded by itself; insertion order is the order the overlay lists them in
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    private final AtomicInteger nextCookie = new AtomicInteger();
+
+    private EditorMetrics() {
+    }
+
+    public static EditorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        synchronized (histograms) {
+            LatencyHistogram histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Starts timing work that ends on the same thread. Sections must be ended in the reverse
+     * order they were begun.
+     */
+    public Section beginSection(String name) {
+        Trace.beginSection(name);
+        return new Section(histogram(name));
+    }
+
+    /**
+     * Starts timing work that may end on another thread or in a later callback.
+     */
+    public Span beginSpan(String name) {
+        return new Span(name, nextCookie.incrementAndGet());
+    }
+
+    public class Section {
+        private final LatencyHistogram histogram;
+        private final long startNanos = SystemClock.elapsedRealtimeNanos();
+
+        Section(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        public void end() {
+            histogram.recordNanos(SystemClock.elapsedRealtimeNanos() - startNanos);
+            Trace.endSection();
+        }
+    }
+
+    public class Span {
+        private final String name;
+        private final int cookie;
+        private final long startNanos = SystemClock.elapsedRealtimeNanos();
+        private boolean ended;
+
+        Span(String name, int cookie) {
+            this.name = name;
+            this.cookie = cookie;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(name, cookie);
+            }
+        }
+
+        /**
+         * Records the time so far under another name, e.g. a first result, without ending
+         * the span.
+         */
+        public void mark(String milestone) {
+            histogram(milestone).recordNanos(SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+
+        /**
+         * Records the span. Only the first end or cancel counts, so every path that finishes
+         * the work may call it.
+         */
+        public void end() {
+            finish(true);
+        }
+
+        /**
+         * Closes the trace section without recording, for work that failed.
+         */
+        public void cancel() {
+            finish(false);
+        }
+
+        private synchronized void finish(boolean record) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            if (record) {
+                histogram(name).recordNanos(SystemClock.elapsedRealtimeNanos() - startNanos);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(name, cookie);
+            }
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : snapshot().values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per operation with samples: count, p50, p99 and max.
+     */
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.US, "%-16s %5s %8s %8s %8s",
+                "", "n", "p50", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : snapshot().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            summary.append('\n').append(String.format(Locale.US, "%-16s %5d %8s %8s %8s",
+                    entry.getKey(), histogram.getCount(),
+                    formatMicros(histogram.getPercentileMicros(50)),
+                    formatMicros(histogram.getPercentileMicros(99)),
+                    formatMicros(histogram.getMaxMicros())));
+        }
+        return summary.toString();
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject metrics = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> entry : snapshot().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            metrics.put(entry.getKey(), new JSONObject()
+                    .put("count", histogram.getCount())
+                    .put("meanMicros", histogram.getMeanMicros())
+                    .put("p50Micros", histogram.getPercentileMicros(50))
+                    .put("p90Micros", histogram.getPercentileMicros(90))
+                    .put("p99Micros", histogram.getPercentileMicros(99))
+                    .put("maxMicros", histogram.getMaxMicros()));
+        }
+        return new JSONObject()
+                .put("exportedAt", System.currentTimeMillis())
+                .put("uptimeMillis", SystemClock.elapsedRealtime())
+                .put("device", Build.MANUFACTURER + " " + Build.MODEL)
+                .put("sdk", Build.VERSION.SDK_INT)
+                .put("metrics", metrics);
+    }
+
+    /**
+     * Writes {@link #toJson()} to the file, replacing it.
+     */
+    public void exportJson(File file) throws IOException {
+        try {
+            FileStore.write(file, toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Map<String, LatencyHistogram> snapshot() {
+        synchronized (histograms) {
+            return new LinkedHashMap<>(histograms);
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1000) {
+            return micros + "us";
+        } else if (micros < 10_000_000) {
+            return String.format(Locale.US, "%.1fms", micros / 1000.0);
+        }
+        return String.format(Locale.US, "%.1fs", micros / 1_000_000.0);
+    }
+}
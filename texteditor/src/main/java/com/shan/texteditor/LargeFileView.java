@@ -0,0 +1,189 @@
+package com.shan.texteditor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only view over a memory-mapped file. Only a sparse line index is kept on the heap
+ * (one offset every {@link #CHECKPOINT_INTERVAL} lines); text is decoded a window at a time,
+ * so heap usage does not grow with the size of the file.
+ * <p>
+ * The charset, BOM and line terminator come from {@link TextFormat#detect}. Lines are split
+ * on LF, or on CR for files that use classic Mac line endings; CRLF lines end in LF, and the
+ * CR stays with the line like the rest of the terminator. In UTF-16 files the terminator is
+ * a whole code unit, never a stray byte of another character.
+ */
+public class LargeFileView implements Closeable {
+
+    static final int CHECKPOINT_INTERVAL = 64;
+
+    // Upper bound for a single decoded window, guards against files with enormous lines
+    private static final int MAX_WINDOW_BYTES = 1024 * 1024;
+
+    // Bytes sampled for format detection, as in DocumentLoader
+    private static final int SNIFF_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private final TextFormat format;
+    // First byte of the text, after the BOM
+    private final int textStart;
+    // 2 in UTF-16, 1 in the single-byte and UTF-8 charsets
+    private final int unitBytes;
+    private final boolean bigEndian;
+    private final char terminator;
+
+    private int[] checkpoints = new int[1024];
+    private int lineCount;
+
+    private LargeFileView(FileChannel channel) throws IOException {
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File is too large to map (" + length + " bytes)");
+        }
+        this.channel = channel;
+        this.size = (int) length;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+        byte[] head = new byte[Math.min(size, SNIFF_BYTES)];
+        buffer.duplicate().get(head);
+        this.format = TextFormat.detect(head, head.length);
+        this.textStart = format.getBomLength();
+        boolean utf16 = format.getCharset() == StandardCharsets.UTF_16LE
+                || format.getCharset() == StandardCharsets.UTF_16BE;
+        this.unitBytes = utf16 ? 2 : 1;
+        this.bigEndian = format.getCharset() == StandardCharsets.UTF_16BE;
+        this.terminator = TextFormat.CR.equals(format.getLineSeparator()) ? '\r' : '\n';
+    }
+
+    /**
+     * Maps the channel and builds the line index. Scans the whole file once, so call it
+     * off the main thread. The view takes ownership of the channel.
+     */
+    public static LargeFileView open(FileChannel channel) throws IOException {
+        LargeFileView view;
+        try {
+            view = new LargeFileView(channel);
+        } catch (IOException | RuntimeException e) {
+            // Pipes and sockets cannot be mapped
+            channel.close();
+            throw e;
+        }
+        try {
+            view.buildIndex();
+        } catch (RuntimeException e) {
+            view.close();
+            throw e;
+        }
+        return view;
+    }
+
+    private void buildIndex() {
+        int lines = 1;
+        checkpoints[0] = textStart;
+        for (int i = textStart; i + unitBytes <= size; i += unitBytes) {
+            if (isTerminator(i) && i + unitBytes < size) {
+                if (lines % CHECKPOINT_INTERVAL == 0) {
+                    int index = lines / CHECKPOINT_INTERVAL;
+                    if (index == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, index * 2);
+                    }
+                    checkpoints[index] = i + unitBytes;
+                }
+                lines++;
+            }
+        }
+        lineCount = lines;
+    }
+
+    private boolean isTerminator(int offset) {
+        if (unitBytes == 1) {
+            return buffer.get(offset) == terminator;
+        }
+        return unitAt(offset) == terminator;
+    }
+
+    private char unitAt(int offset) {
+        int first = buffer.get(offset) & 0xFF;
+        int second = buffer.get(offset + 1) & 0xFF;
+        return (char) (bigEndian ? first << 8 | second : second << 8 | first);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public long getFileSize() {
+        return size;
+    }
+
+    public TextFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Byte offset of the start of the given line, or the file size past the last line
+     */
+    public int getLineOffset(int line) {
+        if (line <= 0) {
+            return textStart;
+        }
+        if (line >= lineCount) {
+            return size;
+        }
+        int offset = checkpoints[line / CHECKPOINT_INTERVAL];
+        int remaining = line % CHECKPOINT_INTERVAL;
+        while (remaining > 0) {
+            if (isTerminator(offset)) {
+                remaining--;
+            }
+            offset += unitBytes;
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes {@code count} lines starting at {@code startLine}. The result keeps the original
+     * line terminators and is cut short if the window would exceed one megabyte.
+     */
+    public String getLines(int startLine, int count) {
+        int start = getLineOffset(startLine);
+        int end = getLineOffset(startLine + count);
+
+        if (end - start > MAX_WINDOW_BYTES) {
+            end = start + MAX_WINDOW_BYTES;
+            if (unitBytes == 2) {
+                // Whole code units, and never half of a surrogate pair
+                end -= (end - start) % 2;
+                if (end - 2 > start && Character.isHighSurrogate(unitAt(end - 2))) {
+                    end -= 2;
+                }
+            } else if (format.getCharset() == StandardCharsets.UTF_8) {
+                // Back off to the start of a UTF-8 sequence
+                while (end > start && (buffer.get(end) & 0xC0) == 0x80) {
+                    end--;
+                }
+            }
+        }
+        // A trailing odd byte of a UTF-16 file is not a character
+        end = Math.min(end, size - (size - textStart) % unitBytes);
+
+        ByteBuffer window = buffer.duplicate();
+        window.limit(end);
+        window.position(start);
+        return format.getCharset().decode(window).toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released once the buffer is garbage collected
+        channel.close();
+    }
+}
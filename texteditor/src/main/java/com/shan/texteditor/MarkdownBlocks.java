@@ -0,0 +1,114 @@
+package com.shan.texteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits markdown into top-level blocks that can be rendered independently.
+ * <p>
+ * A blank line ends a block unless the next line is indented (list continuation, indented
+ * code) or we are inside a fenced code block. Link reference definitions are collected
+ * separately because they apply to the whole document.
+ */
+public class MarkdownBlocks {
+
+    private static final Pattern REFERENCE_DEFINITION =
+            Pattern.compile("^ {0,3}\\[[^\\]]+\\]:\\s*\\S.*$");
+
+    private final List<String> blocks;
+    private final String references;
+
+    private MarkdownBlocks(List<String> blocks, String references) {
+        this.blocks = blocks;
+        this.references = references;
+    }
+
+    public List<String> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * All link reference definitions of the document, one per line, or an empty string
+     */
+    public String getReferences() {
+        return references;
+    }
+
+    public static MarkdownBlocks split(String markdown) {
+        List<String> blocks = new ArrayList<>();
+        StringBuilder references = new StringBuilder();
+        StringBuilder block = new StringBuilder();
+
+        String fence = null;
+        boolean pendingBlank = false;
+        int length = markdown.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = markdown.indexOf('\n', start);
+            if (end == -1) {
+                end = length;
+            }
+            String line = markdown.substring(start, end);
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            start = end + 1;
+
+            if (fence != null) {
+                block.append(line).append('\n');
+                if (line.trim().startsWith(fence)) {
+                    fence = null;
+                }
+                continue;
+            }
+
+            if (line.trim().isEmpty()) {
+                pendingBlank = block.length() > 0;
+                continue;
+            }
+
+            if (pendingBlank) {
+                pendingBlank = false;
+                if (isIndented(line)) {
+                    block.append('\n');
+                } else {
+                    blocks.add(block.toString());
+                    block.setLength(0);
+                }
+            }
+
+            if (REFERENCE_DEFINITION.matcher(line).matches()) {
+                references.append(line).append('\n');
+            }
+
+            String trimmed = line.trim();
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                fence = trimmed.substring(0, 3);
+            }
+            block.append(line).append('\n');
+        }
+
+        if (block.length() > 0) {
+            blocks.add(block.toString());
+        }
+        return new MarkdownBlocks(blocks, references.toString());
+    }
+
+    private static boolean isIndented(String line) {
+        return line.startsWith("  ") || line.startsWith("\t");
+    }
+
+    /**
+     * 64-bit FNV-1a hash, used as the cache key of a rendered block
+     */
+    public static long hash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
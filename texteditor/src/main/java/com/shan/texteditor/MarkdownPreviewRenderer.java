@@ -0,0 +1,162 @@
+package com.shan.texteditor;
+
+import android.os.Handler;
+import android.text.Spanned;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.noties.markwon.Markwon;
+
+/**
+ * Renders markdown previews off the main thread, one top-level block at a time.
+ * Rendered blocks are cached by content hash, so after an edit only the blocks that
+ * actually changed go through Markwon again.
+ * <p>
+ * {@link #prepare} splits the document and renders only the first few blocks; the rest are
+ * rendered on demand through {@link #renderAsync} when the preview list scrolls to them.
+ * A new prepare request supersedes the previous one and its result is never delivered.
+ * <p>
+ * The renderer keeps its own copy of the document's lines on the render thread. Each prepare
+ * request carries only the lines that changed since the previous one, so the main thread
+ * never copies the whole document for a preview.
+ */
+public class MarkdownPreviewRenderer {
+
+    // Cache budget in rendered characters
+    private static final int CACHE_CHARS = 2 * 1024 * 1024;
+
+    // Blocks rendered up front so the top of the preview does not flash as plain text
+    private static final int PREFETCH_BLOCKS = 16;
+
+    public interface Callback {
+        /** Called on the main thread with the blocks of the document */
+        void onPrepared(List<PreviewBlock> blocks);
+    }
+
+    private final Markwon markwon;
+    private final Handler mainHandler;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final LruCache<Long, Spanned> cache = new LruCache<Long, Spanned>(CACHE_CHARS) {
+        @Override
+        protected int sizeOf(Long key, Spanned value) {
+            return Math.max(1, value.length());
+        }
+    };
+
+    // Render thread copy of the document
+    private final List<String> lines = new ArrayList<>();
+
+    // Only the result of the newest request is delivered
+    private volatile int generation;
+    private Future<?> currentPrepare;
+
+    public MarkdownPreviewRenderer(Markwon markwon, Handler mainHandler) {
+        this.markwon = markwon;
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Updates the renderer's copy of the document and prepares its preview. Everything but the
+     * first {@code startLine} and the last {@code unchangedBelow} lines of the copy is replaced
+     * with {@code changedLines}. Must be called on the main thread.
+     */
+    public void prepare(int startLine, int unchangedBelow, List<String> changedLines, Callback callback) {
+        final int token = ++generation;
+        if (currentPrepare != null) {
+            currentPrepare.cancel(false);
+        }
+        // Not cancellable like the render below: the copy has to see every edit
+        executor.execute(() -> {
+            List<String> replaced = lines.subList(startLine, lines.size() - unchangedBelow);
+            replaced.clear();
+            replaced.addAll(changedLines);
+        });
+        currentPrepare = executor.submit(() -> {
+            List<PreviewBlock> blocks = split(String.join("\n", lines));
+            for (int i = 0; i < blocks.size() && i < PREFETCH_BLOCKS; i++) {
+                if (token != generation) {
+                    return;
+                }
+                render(blocks.get(i));
+            }
+            mainHandler.post(() -> {
+                if (token == generation) {
+                    callback.onPrepared(blocks);
+                }
+            });
+        });
+    }
+
+    private List<PreviewBlock> split(String markdown) {
+        MarkdownBlocks split = MarkdownBlocks.split(markdown);
+        String references = split.getReferences();
+        long referencesHash = MarkdownBlocks.hash(references);
+
+        List<PreviewBlock> blocks = new ArrayList<>();
+        for (String block : split.getBlocks()) {
+            // Reference links may be defined in another block, so the definitions are part of the key
+            long key = MarkdownBlocks.hash(block) * 31 + referencesHash;
+            String source = references.isEmpty() ? block : block + "\n" + references;
+            blocks.add(new PreviewBlock(key, block, source));
+        }
+        return blocks;
+    }
+
+    /**
+     * @return the rendered block, or null if it has not been rendered yet
+     */
+    public Spanned getCached(PreviewBlock block) {
+        return cache.get(block.key);
+    }
+
+    /**
+     * Renders a block in the background and runs {@code onRendered} on the main thread.
+     */
+    public void renderAsync(PreviewBlock block, Runnable onRendered) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            render(block);
+            mainHandler.post(onRendered);
+        });
+    }
+
+    private Spanned render(PreviewBlock block) {
+        Spanned rendered = cache.get(block.key);
+        if (rendered == null) {
+            rendered = markwon.render(markwon.parse(block.renderSource));
+            cache.put(block.key, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Drops pending renders and stops the render thread.
+     */
+    public void shutdown() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+    /**
+     * One top-level block of the document as shown by the preview list
+     */
+    public static class PreviewBlock {
+        final long key;
+        final String text;
+        final String renderSource;
+
+        PreviewBlock(long key, String text, String renderSource) {
+            this.key = key;
+            this.text = text;
+            this.renderSource = renderSource;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.shan.texteditor;
+
+import android.text.Spanned;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import io.noties.markwon.Markwon;
+
+/**
+ * Shows the markdown preview as a list of blocks, so only the blocks on screen are laid out.
+ * Blocks that have not been rendered yet are shown as plain text until their render completes.
+ */
+public class PreviewBlockAdapter extends ListAdapter<MarkdownPreviewRenderer.PreviewBlock, PreviewBlockAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<MarkdownPreviewRenderer.PreviewBlock> DIFF =
+            new DiffUtil.ItemCallback<MarkdownPreviewRenderer.PreviewBlock>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull MarkdownPreviewRenderer.PreviewBlock a,
+                                               @NonNull MarkdownPreviewRenderer.PreviewBlock b) {
+                    return a.key == b.key;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull MarkdownPreviewRenderer.PreviewBlock a,
+                                                  @NonNull MarkdownPreviewRenderer.PreviewBlock b) {
+                    // The key is a hash of the content
+                    return a.key == b.key;
+                }
+            };
+
+    private final Markwon markwon;
+    private final MarkdownPreviewRenderer renderer;
+
+    public PreviewBlockAdapter(Markwon markwon, MarkdownPreviewRenderer renderer) {
+        super(DIFF);
+        this.markwon = markwon;
+        this.renderer = renderer;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_preview_block, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        MarkdownPreviewRenderer.PreviewBlock block = getItem(position);
+        Spanned rendered = renderer.getCached(block);
+        if (rendered != null) {
+            markwon.setParsedMarkdown(holder.blockText, rendered);
+            return;
+        }
+
+        holder.blockText.setText(block.text);
+        renderer.renderAsync(block, () -> {
+            int current = holder.getBindingAdapterPosition();
+            if (current != RecyclerView.NO_POSITION && getItem(current).key == block.key) {
+                notifyItemChanged(current);
+            }
+        });
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView blockText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            blockText = itemView.findViewById(R.id.blockText);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.shan.texteditor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import com.shan.storage.FileStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes documents on a dedicated executor.
+ * <ul>
+ * <li>Files are written to a temporary sibling, synced and renamed over the target, so a
+ * crash mid-save leaves the previous version intact. The folder is synced after the rename
+ * so the new version survives a power loss too.</li>
+ * <li>Saves to the same destination that pile up while a write is in progress are
+ * coalesced: only the newest snapshot is written.</li>
+ * <li>Large files only get their changed blocks rewritten. The blocks go to a redo log
+ * first, which {@link #recover(File)} replays if the process dies while applying it.</li>
+ * </ul>
+ */
+public class SaveEngine {
+
+    // Files at least this big are patched in place instead of rewritten
+    private static final long INCREMENTAL_THRESHOLD = 4L * 1024 * 1024;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int LOG_BLOCK = 0x424c4b31; // "BLK1"
+    private static final int LOG_COMMIT = 0x434d5431; // "CMT1"
+
+    /**
+     * Opens the stream for destinations that are not plain files (e.g. SAF documents).
+     */
+    public interface StreamOpener {
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * Called on the main thread once the snapshot, or a newer one that replaced it, is on disk.
+     */
+    public interface Callback {
+        /**
+         * @param superseded whether a newer snapshot for the same destination was written
+         *                   instead of this one
+         */
+        void onSaved(long bytes, long millis, boolean superseded);
+
+        void onError(IOException e);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler;
+
+    // Latest not-yet-started request per destination
+    private final Map<String, Request> pending = new LinkedHashMap<>();
+
+    // Save latency metrics, written on the save thread
+    private volatile long lastSaveMillis = -1;
+    private volatile long totalSaveMillis;
+    private volatile int saveCount;
+
+    public SaveEngine(Handler mainHandler) {
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Queues an atomic save. {@code lines} must be a snapshot that is not modified afterwards.
+     */
+    public void saveToFile(File file, DocumentWriter.Lines lines, TextFormat format, Callback callback) {
+        submit(new Request(file.getAbsolutePath(), file, null, lines, format, callback));
+    }
+
+    /**
+     * Queues a save to a stream. The stream is truncated and rewritten; atomicity is up to
+     * whoever provides it.
+     */
+    public void saveToStream(String key, StreamOpener opener, DocumentWriter.Lines lines,
+                             TextFormat format, Callback callback) {
+        submit(new Request(key, null, opener, lines, format, callback));
+    }
+
+    public long getLastSaveMillis() {
+        return lastSaveMillis;
+    }
+
+    public long getAverageSaveMillis() {
+        int count = saveCount;
+        return count == 0 ? -1 : totalSaveMillis / count;
+    }
+
+    public int getSaveCount() {
+        return saveCount;
+    }
+
+    /**
+     * Lets queued saves finish, then stops the save thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void submit(Request request) {
+        synchronized (pending) {
+            Request previous = pending.put(request.key, request);
+            if (previous != null) {
+                // A task for this destination is already queued and will pick up this request
+                request.callbacks.addAll(0, previous.callbacks);
+                return;
+            }
+        }
+        executor.execute(() -> {
+            Request next;
+            synchronized (pending) {
+                next = pending.remove(request.key);
+            }
+            if (next != null) {
+                run(next);
+            }
+        });
+    }
+
+    private void run(Request request) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            long bytes;
+            if (request.file != null) {
+                bytes = writeFile(request.file, request.lines, request.format);
+            } else {
+                bytes = writeStream(request.opener, request.lines, request.format);
+            }
+
+            long millis = SystemClock.elapsedRealtime() - start;
+            lastSaveMillis = millis;
+            totalSaveMillis += millis;
+            saveCount++;
+
+            mainHandler.post(() -> {
+                // Callbacks of replaced requests come first; the last one belongs to this request
+                int last = request.callbacks.size() - 1;
+                for (int i = 0; i <= last; i++) {
+                    request.callbacks.get(i).onSaved(bytes, millis, i < last);
+                }
+            });
+        } catch (IOException e) {
+            mainHandler.post(() -> {
+                for (Callback callback : request.callbacks) {
+                    callback.onError(e);
+                }
+            });
+        }
+    }
+
+    private long writeStream(StreamOpener opener, DocumentWriter.Lines lines, TextFormat format) throws IOException {
+        // Opening truncates the destination, so text that cannot be encoded has to fail first
+        DocumentWriter.checkEncodable(lines, format);
+        OutputStream out = opener.open();
+        try {
+            return DocumentWriter.write(lines, format, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private long writeFile(File target, DocumentWriter.Lines lines, TextFormat format) throws IOException {
+        if (target.isFile() && target.length() >= INCREMENTAL_THRESHOLD) {
+            long written = writeIncrementally(target, lines, format);
+            if (written >= 0) {
+                return written;
+            }
+        }
+        return writeAtomically(target, lines, format);
+    }
+
+    private long writeAtomically(File target, DocumentWriter.Lines lines, TextFormat format) throws IOException {
+        File temp = SaveFiles.tempFileFor(target);
+        FileOutputStream fos = new FileOutputStream(temp);
+        long written;
+        try {
+            written = DocumentWriter.write(lines, format, fos);
+            fos.getFD().sync();
+        } catch (IOException e) {
+            fos.close();
+            temp.delete();
+            throw e;
+        }
+        fos.close();
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + target.getName());
+        }
+        syncDirectory(target.getParentFile());
+        return written;
+    }
+
+    /**
+     * Rewrites only the blocks that differ from what is on disk.
+     *
+     * @return bytes written to the target, or -1 if so much changed that a full atomic
+     * rewrite is cheaper
+     */
+    private long writeIncrementally(File target, DocumentWriter.Lines lines, TextFormat format) throws IOException {
+        File log = SaveFiles.logFileFor(target);
+        BlockDiffStream diff = new BlockDiffStream(target, log);
+        long length;
+        try {
+            length = DocumentWriter.write(lines, format, diff);
+            diff.finish();
+        } catch (IOException e) {
+            diff.abort();
+            throw e;
+        }
+
+        if (diff.changedBytes > length / 2) {
+            diff.abort();
+            return -1;
+        }
+
+        diff.commit(length);
+        // The log must still be there after a crash while the target is half patched
+        syncDirectory(target.getParentFile());
+        applyLog(target, log);
+        log.delete();
+        return diff.changedBytes;
+    }
+
+    /**
+     * Finishes an incremental save that was interrupted, if any. Call before reading the file.
+     */
+    public static void recover(File target) {
+        File log = SaveFiles.logFileFor(target);
+        if (!log.exists()) {
+            return;
+        }
+        try {
+            applyLog(target, log);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        log.delete();
+        SaveFiles.tempFileFor(target).delete();
+    }
+
+    /**
+     * Makes renames and new entries in {@code folder} durable. Best effort: some storage,
+     * like FUSE-backed shared storage, does not support syncing a folder.
+     */
+    private static void syncDirectory(File folder) {
+        if (folder == null) {
+            return;
+        }
+        try {
+            FileDescriptor fd = Os.open(folder.getPath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            if (e.errno != OsConstants.EINVAL) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Replays a committed redo log onto the target. Logs without a commit record were
+     * interrupted before the target was touched and are ignored.
+     */
+    private static void applyLog(File target, File log) throws IOException {
+        long newLength = readCommittedLength(log);
+        if (newLength < 0) {
+            return;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)));
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            byte[] block = new byte[BLOCK_SIZE];
+            while (in.readInt() == LOG_BLOCK) {
+                long offset = in.readLong();
+                int length = in.readInt();
+                in.readFully(block, 0, length);
+                FileStore.writeFully(channel, ByteBuffer.wrap(block, 0, length), offset);
+            }
+            channel.truncate(newLength);
+            channel.force(true);
+        } finally {
+            in.close();
+            raf.close();
+        }
+    }
+
+    private static long readCommittedLength(File log) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)));
+        try {
+            while (true) {
+                int tag = in.readInt();
+                if (tag == LOG_COMMIT) {
+                    return in.readLong();
+                } else if (tag != LOG_BLOCK) {
+                    return -1;
+                }
+                in.readLong();
+                int length = in.readInt();
+                in.skipBytes(length);
+            }
+        } catch (EOFException e) {
+            return -1;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Cuts the encoded document into blocks, compares each with the same range of the
+     * current file and appends the ones that differ to the redo log.
+     */
+    private static class BlockDiffStream extends OutputStream {
+        private final RandomAccessFile current;
+        private final File logFile;
+        private final FileOutputStream logStream;
+        private final DataOutputStream log;
+
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] existing = new byte[BLOCK_SIZE];
+        private int filled;
+        private long offset;
+        long changedBytes;
+
+        BlockDiffStream(File target, File logFile) throws IOException {
+            this.current = new RandomAccessFile(target, "r");
+            this.logFile = logFile;
+            this.logStream = new FileOutputStream(logFile);
+            this.log = new DataOutputStream(new BufferedOutputStream(logStream, BLOCK_SIZE));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            block[filled++] = (byte) b;
+            if (filled == BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, BLOCK_SIZE - filled);
+                System.arraycopy(b, off, block, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                if (filled == BLOCK_SIZE) {
+                    flushBlock();
+                }
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (filled == 0) {
+                return;
+            }
+            if (!sameAsCurrent()) {
+                log.writeInt(LOG_BLOCK);
+                log.writeLong(offset);
+                log.writeInt(filled);
+                log.write(block, 0, filled);
+                changedBytes += filled;
+            }
+            offset += filled;
+            filled = 0;
+        }
+
+        private boolean sameAsCurrent() throws IOException {
+            if (offset + filled > current.length()) {
+                return false;
+            }
+            current.seek(offset);
+            current.readFully(existing, 0, filled);
+            for (int i = 0; i < filled; i++) {
+                if (block[i] != existing[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void finish() throws IOException {
+            flushBlock();
+            current.close();
+        }
+
+        void commit(long length) throws IOException {
+            log.writeInt(LOG_COMMIT);
+            log.writeLong(length);
+            log.flush();
+            logStream.getFD().sync();
+            log.close();
+        }
+
+        void abort() {
+            try {
+                current.close();
+                log.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            logFile.delete();
+        }
+    }
+
+    private static class Request {
+        final String key;
+        final File file;
+        final StreamOpener opener;
+        final DocumentWriter.Lines lines;
+        final TextFormat format;
+        final List<Callback> callbacks = new ArrayList<>();
+
+        Request(String key, File file, StreamOpener opener, DocumentWriter.Lines lines,
+                TextFormat format, Callback callback) {
+            this.key = key;
+            this.file = file;
+            this.opener = opener;
+            this.lines = lines;
+            this.format = format;
+            this.callbacks.add(callback);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.shan.texteditor;
+
+import java.io.File;
+
+/**
+ * Names of the hidden files {@link SaveEngine} keeps next to a document while saving it:
+ * the temporary copy that is renamed over the document and the redo log of an incremental
+ * save. Code that lists or watches the notes tree uses {@link #isSaveFile(String)} to skip
+ * them. Free of Android dependencies so folder counting can use it on the host JVM.
+ */
+public class SaveFiles {
+
+    private static final String TEMP_SUFFIX = ".saving";
+    private static final String LOG_SUFFIX = ".savelog";
+
+    private SaveFiles() {
+    }
+
+    public static File tempFileFor(File target) {
+        return new File(target.getParentFile(), "." + target.getName() + TEMP_SUFFIX);
+    }
+
+    public static File logFileFor(File target) {
+        return new File(target.getParentFile(), "." + target.getName() + LOG_SUFFIX);
+    }
+
+    public static boolean isSaveFile(String name) {
+        return name.startsWith(".") && (name.endsWith(TEMP_SUFFIX) || name.endsWith(LOG_SUFFIX));
+    }
+}
@@ -4,50 +4,138 @@ import android.app.AlertDialog;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.text.format.Formatter;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.ImageButton;
+import android.widget.LinearLayout;
 import android.widget.PopupMenu;
-import android.widget.ScrollView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.tabs.TabLayout;
+import com.shan.storage.SnapshotStore;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.UnmappableCharacterException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import io.github.rosemoe.sora.event.ContentChangeEvent;
+import io.github.rosemoe.sora.event.ScrollEvent;
 import io.github.rosemoe.sora.langs.textmate.TextMateLanguage;
-import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry;
-import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry;
 import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry;
-import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver;
+import io.github.rosemoe.sora.text.CharPosition;
+import io.github.rosemoe.sora.text.Content;
+import io.github.rosemoe.sora.text.LineSeparator;
 import io.github.rosemoe.sora.widget.CodeEditor;
 import io.github.rosemoe.sora.langs.textmate.TextMateColorScheme;
 import io.noties.markwon.Markwon;
 
 public class TextEditorActivity extends AppCompatActivity {
 
+    /**
+     * Optional long extra: files larger than this many bytes are opened in the read-only
+     * memory-mapped viewer instead of being loaded into the editor.
+     */
+    public static final String EXTRA_LARGE_FILE_THRESHOLD = "large_file_threshold";
+
+    private static final long DEFAULT_LARGE_FILE_THRESHOLD = 8L * 1024 * 1024;
+
+    // Lines kept in the editor while paging through a large file
+    private static final int LARGE_FILE_WINDOW_LINES = 1000;
+    private static final int LARGE_FILE_PAGE_MARGIN = 200;
+
+    private static final int TAB_CODE = 0;
+    private static final int TAB_PREVIEW = 1;
+    private static final int TAB_SPLIT = 2;
+
+    // Minimum time between live preview renders while typing
+    private static final long LIVE_PREVIEW_DELAY_MS = 250;
+
+    private static final long OVERLAY_REFRESH_MS = 1000;
+
+    // Revisions kept per document. Pruning rewrites the manifest and scans every chunk, so
+    // it waits until a batch of extra revisions has piled up.
+    private static final int MAX_REVISIONS = 200;
+    private static final int PRUNE_BATCH = 20;
+
+    // Shared by all editors of the process and outlives them, so that the snapshot after
+    // "Save" in the close dialog is still taken
+    private static final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor();
+    private static SnapshotStore snapshotStore;
+
     private CodeEditor codeEditor;
-    private TextView markdownPreview;
-    private ScrollView previewContainer;
+    private RecyclerView previewList;
+    private PreviewBlockAdapter previewAdapter;
+    private LinearLayout editorContainer;
     private TabLayout tabLayout;
     private Button btnSave;
     private ImageButton btnMenu;
+    private ProgressBar loadProgress;
+    private TextView largeFileStatus;
+    private TextView performanceOverlay;
     private Markwon markwon;
+    private MarkdownPreviewRenderer previewRenderer;
+
+    // Background loading
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final DocumentLoader documentLoader = new DocumentLoader(ioExecutor, mainHandler::post);
+    private final SaveEngine saveEngine = new SaveEngine(mainHandler);
+    private boolean loading;
+
+    private final EditorMetrics metrics = EditorMetrics.getInstance();
+
+    // Format of the file on disk, written back unchanged on save
+    private TextFormat documentFormat = TextFormat.DEFAULT;
+    // Set when some bytes of the file could not be decoded; saving would write U+FFFD back
+    private boolean lossyDecode;
+    // Format the document last failed to encode in; autosave waits for the user to pick another
+    private TextFormat unencodableFormat;
+    private boolean encodingPromptShown;
+    private boolean documentModified;
+    // Set while text is put into the editor that is not a user edit (loading, recovery)
+    private boolean suppressChangeTracking;
+
+    // Line/word/heading counts, maintained from change events
+    private final DocumentStats documentStats = new DocumentStats();
+
+    // Crash-recovery journal of unsaved edits, null for documents without a file
+    private AutosaveJournal journal;
+
+    // Large file viewing mode
+    private LargeFileView largeFileView;
+    private int windowStartLine;
+    private int pageGeneration;
 
     // Support both Uri and File path
     private Uri currentFileUri;
@@ -60,6 +148,12 @@ public class TextEditorActivity extends AppCompatActivity {
                 if (uri != null) {
                     currentFileUri = uri;
                     currentFile = null; // Clear file when using SAF
+                    // The new document gets its own journal, the old one is saved along with it
+                    if (journal != null) {
+                        journal.discard();
+                    }
+                    attachJournal(uri.toString());
+                    journal.start(codeEditor.getText().length());
                     saveContentToUri(uri);
                 }
             }
@@ -71,7 +165,7 @@ public class TextEditorActivity extends AppCompatActivity {
                 if (uri != null) {
                     currentFileUri = uri;
                     currentFile = null; // Clear file when using SAF
-                    loadContentFromUri(uri);
+                    openUri(uri);
                     setResult(RESULT_OK);
                 }
             }
@@ -93,20 +187,34 @@ public class TextEditorActivity extends AppCompatActivity {
         setContentView(R.layout.activity_text_editor);
 
         codeEditor = findViewById(R.id.codeEditor);
-        markdownPreview = findViewById(R.id.markdownPreview);
-        previewContainer = findViewById(R.id.previewContainer);
+        previewList = findViewById(R.id.previewList);
+        editorContainer = findViewById(R.id.editorContainer);
         tabLayout = findViewById(R.id.tabLayout);
         btnSave = findViewById(R.id.btnSave);
         btnMenu = findViewById(R.id.btnMenu);
+        loadProgress = findViewById(R.id.loadProgress);
+        largeFileStatus = findViewById(R.id.largeFileStatus);
+        performanceOverlay = findViewById(R.id.performanceOverlay);
 
         markwon = Markwon.create(this);
+        previewRenderer = new MarkdownPreviewRenderer(markwon, mainHandler);
+        previewAdapter = new PreviewBlockAdapter(markwon, previewRenderer);
+        previewList.setLayoutManager(new LinearLayoutManager(this));
+        previewList.setAdapter(previewAdapter);
 
+        EditorMetrics.Section section = metrics.beginSection(EditorMetrics.SETUP_TEXTMATE);
         setupTextMate();
+        section.end();
+        section = metrics.beginSection(EditorMetrics.SETUP_EDITOR);
         setupEditor();
+        section.end();
         setupTabs();
+        applySplitOrientation(getResources().getConfiguration());
 
         // Check if we have a file path from intent
+        section = metrics.beginSection(EditorMetrics.HANDLE_INTENT);
         handleIntent();
+        section.end();
 
         btnSave.setOnClickListener(v -> saveCurrentFile());
 
@@ -137,7 +245,7 @@ public class TextEditorActivity extends AppCompatActivity {
             // Opened from external app
             if (data != null) {
                 currentFileUri = data;
-                loadContentFromUri(data);
+                openUri(data);
             }
         } else if (Intent.ACTION_SEND.equals(action)) {
             // Received shared content
@@ -153,21 +261,49 @@ public class TextEditorActivity extends AppCompatActivity {
             filePath = intent.getStringExtra("file_path");
             if (filePath != null) {
                 currentFile = new File(filePath);
-                loadContentFromFile(currentFile);
+                if (currentFile.length() > getLargeFileThreshold()) {
+                    openLargeFile(currentFile);
+                } else {
+                    loadContentFromFile(currentFile);
+                }
             }
         }
     }
 
     private void saveCurrentFile() {
-        if (currentFile != null) {
-            // Save to direct file path
-            saveContentToFile(currentFile);
-        } else if (currentFileUri != null) {
-            // Save to URI (SAF)
-            saveContentToUri(currentFileUri);
-        } else {
-            // No file associated, create new
-            saveFileLauncher.launch("file.md");
+        // Only the main-thread part; the write itself is measured as EditorMetrics.SAVE
+        EditorMetrics.Section section = metrics.beginSection(EditorMetrics.SAVE_CURRENT_FILE);
+        try {
+            if (loading) {
+                // Saving now would write a truncated document
+                Toast.makeText(this, "File is still loading", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (largeFileView != null) {
+                Toast.makeText(this, "Large files are opened read-only", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (!documentModified && (currentFile != null || currentFileUri != null)) {
+                // Nothing to write, the file on disk already has this content
+                setResult(RESULT_OK);
+                return;
+            }
+            if (lossyDecode && (currentFile != null || currentFileUri != null)) {
+                confirmLossySave(this::saveCurrentFile);
+                return;
+            }
+            if (currentFile != null) {
+                // Save to direct file path
+                saveContentToFile(currentFile);
+            } else if (currentFileUri != null) {
+                // Save to URI (SAF)
+                saveContentToUri(currentFileUri);
+            } else {
+                // No file associated, create new
+                saveFileLauncher.launch("file.md");
+            }
+        } finally {
+            section.end();
         }
     }
 
@@ -175,6 +311,11 @@ public class TextEditorActivity extends AppCompatActivity {
         PopupMenu popup = new PopupMenu(this, view);
         popup.getMenuInflater().inflate(R.menu.menu_toolbar, popup.getMenu());
         popup.getMenu().findItem(R.id.menu_save).setVisible(false);
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        popup.getMenu().findItem(R.id.menu_performance_overlay)
+                .setVisible(debuggable)
+                .setChecked(performanceOverlay.getVisibility() == View.VISIBLE);
+        popup.getMenu().findItem(R.id.menu_export_metrics).setVisible(debuggable);
 
         popup.setOnMenuItemClickListener(item -> {
             int id = item.getItemId();
@@ -187,6 +328,15 @@ public class TextEditorActivity extends AppCompatActivity {
             } else if (id == R.id.menu_file_info) {
                 showFileInfo();
                 return true;
+            } else if (id == R.id.menu_history) {
+                showHistory();
+                return true;
+            } else if (id == R.id.menu_performance_overlay) {
+                togglePerformanceOverlay();
+                return true;
+            } else if (id == R.id.menu_export_metrics) {
+                exportMetrics();
+                return true;
             } else if (id == R.id.menu_close) {
                 showCloseDialog();
                 return true;
@@ -197,9 +347,17 @@ public class TextEditorActivity extends AppCompatActivity {
     }
 
     private void showFileInfo() {
-        String content = codeEditor.getText().toString();
-        int lines = content.split("\n").length;
-        int chars = content.length();
+        String counts;
+        if (largeFileView != null) {
+            counts = "\n\nLines: " + largeFileView.getLineCount() +
+                    "\nBytes: " + largeFileView.getFileSize();
+        } else {
+            counts = "\n\nLines: " + documentStats.getLineCount() +
+                    "\nCharacters: " + documentStats.getCharacterCount() +
+                    "\nWords: " + documentStats.getWordCount() +
+                    "\nHeadings: " + documentStats.getHeadingCount() +
+                    "\nReading time: " + documentStats.getReadingMinutes() + " min";
+        }
 
         String fileName;
         if (currentFile != null) {
@@ -212,22 +370,81 @@ public class TextEditorActivity extends AppCompatActivity {
 
         new AlertDialog.Builder(this)
                 .setTitle("File Info")
-                .setMessage("Name: " + fileName +
-                        "\n\nLines: " + lines +
-                        "\nCharacters: " + chars)
+                .setMessage("Name: " + fileName + counts + formatSaveStats())
                 .setPositiveButton("OK", null)
                 .show();
     }
 
+    private String formatSaveStats() {
+        if (saveEngine.getSaveCount() == 0) {
+            return "";
+        }
+        return "\n\nLast save: " + saveEngine.getLastSaveMillis() + " ms" +
+                "\nAverage save: " + saveEngine.getAverageSaveMillis() + " ms (" +
+                saveEngine.getSaveCount() + " saves)";
+    }
+
+    // ==================== METRICS ====================
+
+    private final Runnable overlayRefresh = new Runnable() {
+        @Override
+        public void run() {
+            performanceOverlay.setText(metrics.formatSummary());
+            mainHandler.postDelayed(this, OVERLAY_REFRESH_MS);
+        }
+    };
+
+    private void togglePerformanceOverlay() {
+        if (performanceOverlay.getVisibility() == View.VISIBLE) {
+            mainHandler.removeCallbacks(overlayRefresh);
+            performanceOverlay.setVisibility(View.GONE);
+        } else {
+            performanceOverlay.setVisibility(View.VISIBLE);
+            overlayRefresh.run();
+        }
+    }
+
+    /**
+     * Writes the latency histograms as JSON to the app's external files folder, where
+     * {@code adb pull} can reach it without root.
+     */
+    private void exportMetrics() {
+        ioExecutor.execute(() -> {
+            File dir = getExternalFilesDir(null);
+            File file = new File(dir != null ? dir : getFilesDir(), "editor_metrics.json");
+            try {
+                metrics.exportJson(file);
+                mainHandler.post(() -> Toast.makeText(this, "Metrics exported: " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                e.printStackTrace();
+                mainHandler.post(() -> Toast.makeText(this, "Export Failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
     private void showCloseDialog() {
         new AlertDialog.Builder(this)
                 .setTitle("Close File")
                 .setMessage("Do you want to save before closing?")
                 .setPositiveButton("Save", (dialog, which) -> {
+                    if (lossyDecode) {
+                        confirmLossySave(() -> {
+                            saveCurrentFile();
+                            finish();
+                        });
+                        return;
+                    }
                     saveCurrentFile();
                     finish();
                 })
-                .setNegativeButton("Don't Save", (dialog, which) -> finish())
+                .setNegativeButton("Don't Save", (dialog, which) -> {
+                    if (journal != null) {
+                        journal.discard();
+                    }
+                    finish();
+                })
                 .setNeutralButton("Cancel", null)
                 .show();
     }
@@ -235,24 +452,31 @@ public class TextEditorActivity extends AppCompatActivity {
     private void setupTabs() {
         tabLayout.addTab(tabLayout.newTab().setText("Code"));
         tabLayout.addTab(tabLayout.newTab().setText("Preview"));
+        tabLayout.addTab(tabLayout.newTab().setText("Split"));
 
         tabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
-                if (tab.getPosition() == 0) {
+                if (tab.getPosition() == TAB_CODE) {
+                    cancelLivePreview();
                     codeEditor.setVisibility(View.VISIBLE);
-                    previewContainer.setVisibility(View.GONE);
+                    previewList.setVisibility(View.GONE);
                     // Auto-open keyboard when switching to Code tab
                     codeEditor.postDelayed(() -> {
                         android.view.inputmethod.InputMethodManager imm =
                                 (android.view.inputmethod.InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
                         imm.showSoftInput(codeEditor, android.view.inputmethod.InputMethodManager.SHOW_IMPLICIT);
                     }, 200);
+                } else if (tab.getPosition() == TAB_SPLIT) {
+                    // Editor and live preview side by side, keyboard stays up
+                    codeEditor.setVisibility(View.VISIBLE);
+                    previewList.setVisibility(View.VISIBLE);
+                    updatePreview();
                 } else {
+                    cancelLivePreview();
                     codeEditor.setVisibility(View.GONE);
-                    previewContainer.setVisibility(View.VISIBLE);
-                    String markdown = codeEditor.getText().toString();
-                    markwon.setMarkdown(markdownPreview, markdown);
+                    previewList.setVisibility(View.VISIBLE);
+                    updatePreview();
 
                     // Hide keyboard when switching to Preview tab
                     android.view.inputmethod.InputMethodManager imm =
@@ -265,11 +489,102 @@ public class TextEditorActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Stacks the split panes vertically in portrait and side by side in landscape
+     */
+    private void applySplitOrientation(Configuration config) {
+        boolean landscape = config.orientation == Configuration.ORIENTATION_LANDSCAPE;
+        editorContainer.setOrientation(landscape ? LinearLayout.HORIZONTAL : LinearLayout.VERTICAL);
+        for (View pane : new View[]{codeEditor, previewList}) {
+            LinearLayout.LayoutParams params = (LinearLayout.LayoutParams) pane.getLayoutParams();
+            params.width = landscape ? 0 : LinearLayout.LayoutParams.MATCH_PARENT;
+            params.height = landscape ? LinearLayout.LayoutParams.MATCH_PARENT : 0;
+            params.weight = 1;
+            pane.setLayoutParams(params);
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        applySplitOrientation(newConfig);
+    }
+
+    private boolean livePreviewScheduled;
+
+    // Lines at the top and bottom of the document that are unchanged since the preview
+    // renderer last got a copy; only the lines in between are copied for the next preview
+    private int previewUnchangedAbove;
+    private int previewUnchangedBelow;
+
+    private final Runnable livePreviewRunnable = () -> {
+        livePreviewScheduled = false;
+        updatePreview();
+    };
+
+    /**
+     * Throttles live preview renders: the first edit schedules one, later edits within the
+     * delay are picked up by that same render since it reads the text when it runs.
+     */
+    private void scheduleLivePreview() {
+        if (tabLayout.getSelectedTabPosition() != TAB_SPLIT || livePreviewScheduled) {
+            return;
+        }
+        livePreviewScheduled = true;
+        mainHandler.postDelayed(livePreviewRunnable, LIVE_PREVIEW_DELAY_MS);
+    }
+
+    private void cancelLivePreview() {
+        mainHandler.removeCallbacks(livePreviewRunnable);
+        livePreviewScheduled = false;
+    }
+
+    /**
+     * Splits and renders the preview in the background; unchanged blocks come from the
+     * renderer's cache and DiffUtil only rebinds the rows that changed
+     */
+    private void updatePreview() {
+        // A superseded request never delivers, so its span is simply dropped
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.PREVIEW);
+        Content content = codeEditor.getText();
+        int lineCount = content.getLineCount();
+        int start = Math.min(previewUnchangedAbove, lineCount);
+        int end = Math.max(start, lineCount - Math.min(previewUnchangedBelow, lineCount));
+        List<String> changedLines = new ArrayList<>(end - start);
+        for (int line = start; line < end; line++) {
+            changedLines.add(content.getLine(line).toString());
+        }
+        previewUnchangedAbove = Integer.MAX_VALUE;
+        previewUnchangedBelow = Integer.MAX_VALUE;
+
+        previewRenderer.prepare(start, lineCount - end, changedLines, blocks -> {
+            previewAdapter.submitList(blocks);
+            span.end();
+        });
+    }
+
+    /**
+     * Narrows the unchanged top and bottom of the document to exclude an edit. Lines below
+     * an edit only move, so counting them from the end keeps them valid across edits.
+     */
+    private void trackPreviewChange(ContentChangeEvent event) {
+        if (event.getAction() == ContentChangeEvent.ACTION_SET_NEW_TEXT) {
+            previewUnchangedAbove = 0;
+            previewUnchangedBelow = 0;
+            return;
+        }
+        // After a delete the changed range has collapsed onto its start
+        int endLine = event.getAction() == ContentChangeEvent.ACTION_INSERT
+                ? event.getChangeEnd().line : event.getChangeStart().line;
+        previewUnchangedAbove = Math.min(previewUnchangedAbove, event.getChangeStart().line);
+        previewUnchangedBelow = Math.min(previewUnchangedBelow,
+                codeEditor.getText().getLineCount() - 1 - endLine);
+    }
+
     private void setupTextMate() {
         try {
-            FileProviderRegistry.getInstance().addFileProvider(new AssetsFileResolver(getAssets()));
-            ThemeRegistry.getInstance().setTheme("default");
-            GrammarRegistry.getInstance().loadGrammars("textmate/languages.json");
+            // No-op after the first editor of the process or a prewarm
+            TextMateWarmup.ensureInitialized(this);
         } catch (Exception e) {
             e.printStackTrace();
             Toast.makeText(this, "TextMate Setup Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -280,7 +595,7 @@ public class TextEditorActivity extends AppCompatActivity {
         try {
             TextMateColorScheme colorScheme = TextMateColorScheme.create(ThemeRegistry.getInstance());
             codeEditor.setColorScheme(colorScheme);
-            TextMateLanguage language = TextMateLanguage.create("text.html.markdown", true);
+            TextMateLanguage language = TextMateLanguage.create(TextMateWarmup.MARKDOWN_SCOPE, true);
             codeEditor.setEditorLanguage(language);
         } catch (Exception e) {
             e.printStackTrace();
@@ -292,6 +607,23 @@ public class TextEditorActivity extends AppCompatActivity {
         codeEditor.setPinLineNumber(true);
         codeEditor.setCursorBlinkPeriod(500);
 
+        documentStats.reset(codeEditor.getText());
+        codeEditor.subscribeEvent(ContentChangeEvent.class, (event, unsubscribe) -> {
+            documentStats.onContentChanged(event);
+            trackPreviewChange(event);
+            if (suppressChangeTracking) {
+                return;
+            }
+            documentModified = true;
+            if (journal != null) {
+                recordInJournal(event);
+            }
+            scheduleLivePreview();
+        });
+
+        // Pages the visible window in when viewing a large file
+        codeEditor.subscribeEvent(ScrollEvent.class, (event, unsubscribe) -> onLargeFileScrolled());
+
         // Make editor focusable
         codeEditor.setFocusable(true);
         codeEditor.setFocusableInTouchMode(true);
@@ -302,97 +634,697 @@ public class TextEditorActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Asks before overwriting a file that was not decoded losslessly. Runs {@code save} once
+     * the user agrees, and does not ask again for this document.
+     */
+    private void confirmLossySave(Runnable save) {
+        new AlertDialog.Builder(this)
+                .setTitle("Save File")
+                .setMessage("Parts of this file are not valid " + documentFormat.getCharset().name() +
+                        " and are shown as \uFFFD. Saving replaces the original bytes there for good. Save anyway?")
+                .setPositiveButton("Save", (dialog, which) -> {
+                    lossyDecode = false;
+                    save.run();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Offers to switch a document to UTF-8 when it contains text its own charset cannot store
+     */
+    private void offerUtf8Save(TextFormat format) {
+        if (encodingPromptShown) {
+            return;
+        }
+        encodingPromptShown = true;
+        new AlertDialog.Builder(this)
+                .setTitle("Save File")
+                .setMessage("This file is encoded as " + format.getCharset().name() +
+                        ", which cannot store some of the characters in it. Save it as UTF-8 instead?")
+                .setPositiveButton("Save as UTF-8", (dialog, which) -> {
+                    documentFormat = documentFormat.toUtf8();
+                    saveCurrentFile();
+                })
+                .setNegativeButton("Cancel", null)
+                .setOnDismissListener(dialog -> encodingPromptShown = false)
+                .show();
+    }
+
     private void saveContentToFile(File file) {
-        try {
-            FileOutputStream fos = new FileOutputStream(file);
-            OutputStreamWriter writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
-            String content = codeEditor.getText().toString();
-            writer.write(content);
-            writer.flush();
-            writer.close();
-            fos.close();
-
-            Toast.makeText(this, "File Saved: " + file.getName(), Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
-        } catch (IOException e) {
+        saveContentToFile(file, false);
+    }
+
+    private void saveContentToFile(File file, boolean autosave) {
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.SAVE);
+        long checkpoint = journal != null ? journal.beginCheckpoint(codeEditor.getText().length()) : -1;
+        // Snapshot on the main thread, encode and write on the save thread
+        DocumentWriter.Lines snapshot = DocumentWriter.linesOf(codeEditor.getText().copyText());
+        documentModified = false;
+        setResult(RESULT_OK);
+        saveEngine.saveToFile(file, snapshot, documentFormat,
+                new SaveCallback(autosave ? null : "File Saved: " + file.getName(), journal, checkpoint,
+                        span, file.getAbsolutePath(), snapshot, documentFormat));
+    }
+
+    private void saveContentToUri(Uri uri) {
+        saveContentToUri(uri, false);
+    }
+
+    private void saveContentToUri(Uri uri, boolean autosave) {
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.SAVE);
+        ContentResolver resolver = getContentResolver();
+        long checkpoint = journal != null ? journal.beginCheckpoint(codeEditor.getText().length()) : -1;
+        DocumentWriter.Lines snapshot = DocumentWriter.linesOf(codeEditor.getText().copyText());
+        documentModified = false;
+        setResult(RESULT_OK);
+        saveEngine.saveToStream(uri.toString(), () -> {
+            // "wt" truncates, plain "w" may leave the tail of a longer old file behind
+            OutputStream out = resolver.openOutputStream(uri, "wt");
+            if (out == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            return out;
+        }, snapshot, documentFormat, new SaveCallback(autosave ? null : "File Saved", journal, checkpoint,
+                span, uri.toString(), snapshot, documentFormat));
+    }
+
+    private class SaveCallback implements SaveEngine.Callback {
+        private final String doneMessage;
+        private final AutosaveJournal checkpointJournal;
+        private final long checkpoint;
+        private final EditorMetrics.Span span;
+        // What was saved, for the document's history
+        private final String document;
+        private final DocumentWriter.Lines lines;
+        private final TextFormat format;
+
+        // doneMessage is null for autosaves, which succeed silently
+        SaveCallback(String doneMessage, AutosaveJournal checkpointJournal, long checkpoint,
+                     EditorMetrics.Span span, String document, DocumentWriter.Lines lines, TextFormat format) {
+            this.doneMessage = doneMessage;
+            this.checkpointJournal = checkpointJournal;
+            this.checkpoint = checkpoint;
+            this.span = span;
+            this.document = document;
+            this.lines = lines;
+            this.format = format;
+        }
+
+        @Override
+        public void onSaved(long bytes, long millis, boolean superseded) {
+            span.end();
+            // A replaced snapshot never reached the disk, so it is not a revision
+            if (!superseded) {
+                recordSnapshot(getSnapshotStore(getApplicationContext()), document, lines, format);
+            }
+            if (checkpointJournal != null) {
+                checkpointJournal.endCheckpoint(checkpoint, true);
+            }
+            if (doneMessage != null) {
+                Toast.makeText(getApplicationContext(), doneMessage, Toast.LENGTH_SHORT).show();
+            }
+        }
+
+        @Override
+        public void onError(IOException e) {
             e.printStackTrace();
-            Toast.makeText(this, "Save Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            span.cancel();
+            if (checkpointJournal != null) {
+                checkpointJournal.endCheckpoint(checkpoint, false);
+            }
+            documentModified = true;
+            if (e instanceof UnmappableCharacterException && !isFinishing()) {
+                unencodableFormat = format;
+                offerUtf8Save(format);
+                return;
+            }
+            Toast.makeText(getApplicationContext(), "Save Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
 
-    private void saveContentToUri(Uri uri) {
+    // ==================== HISTORY ====================
+
+    private static synchronized SnapshotStore getSnapshotStore(Context context) {
+        if (snapshotStore == null) {
+            snapshotStore = new SnapshotStore(new File(context.getFilesDir(), "snapshots"));
+        }
+        return snapshotStore;
+    }
+
+    /**
+     * Adds a saved revision to the document's history, encoded the way it was written.
+     * Unchanged content is not recorded again, and only the chunks an edit touched take up
+     * new space. The file itself is not read back: large files are patched in place, and a
+     * later save could be halfway through it.
+     */
+    private static void recordSnapshot(SnapshotStore store, String document,
+                                       DocumentWriter.Lines lines, TextFormat format) {
+        snapshotExecutor.execute(() -> {
+            try {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                DocumentWriter.write(lines, format, content);
+                if (store.snapshot(document, content.toByteArray()) != null
+                        && store.countSnapshots(document) > MAX_REVISIONS + PRUNE_BATCH) {
+                    store.prune(document, MAX_REVISIONS);
+                    store.collectGarbage();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Key of the current document in the journal and the snapshot store, null if unsaved
+     */
+    private String documentKey() {
+        if (currentFile != null) {
+            return currentFile.getAbsolutePath();
+        } else if (currentFileUri != null) {
+            return currentFileUri.toString();
+        }
+        return null;
+    }
+
+    private void showHistory() {
+        String document = documentKey();
+        if (document == null) {
+            Toast.makeText(this, "Save the file to start its history", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (loading || largeFileView != null) {
+            Toast.makeText(this, "History is not available while the file is read-only", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        SnapshotStore store = getSnapshotStore(this);
+        snapshotExecutor.execute(() -> {
+            try {
+                List<SnapshotStore.Snapshot> snapshots = store.list(document);
+                mainHandler.post(() -> showSnapshots(store, snapshots));
+            } catch (IOException e) {
+                e.printStackTrace();
+                mainHandler.post(() -> Toast.makeText(this, "History Failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    private void showSnapshots(SnapshotStore store, List<SnapshotStore.Snapshot> snapshots) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (snapshots.isEmpty()) {
+            Toast.makeText(this, "No saved revisions yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Newest first
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        String[] labels = new String[snapshots.size()];
+        for (int i = 0; i < labels.length; i++) {
+            SnapshotStore.Snapshot snapshot = snapshots.get(snapshots.size() - 1 - i);
+            labels[i] = dateFormat.format(new Date(snapshot.time)) + "\n"
+                    + Formatter.formatShortFileSize(this, snapshot.length)
+                    + " (+" + Formatter.formatShortFileSize(this, snapshot.storedBytes) + " stored)";
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("History")
+                .setItems(labels, (dialog, which) ->
+                        restoreSnapshot(store, snapshots.get(snapshots.size() - 1 - which)))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    /**
+     * Puts a revision into the editor as an ordinary, undoable edit; it is written to the
+     * file on the next save.
+     */
+    private void restoreSnapshot(SnapshotStore store, SnapshotStore.Snapshot snapshot) {
+        snapshotExecutor.execute(() -> {
+            try {
+                byte[] bytes = store.read(snapshot);
+                TextFormat format = TextFormat.detect(bytes, bytes.length);
+                String text = new String(bytes, format.getBomLength(),
+                        bytes.length - format.getBomLength(), format.getCharset());
+                mainHandler.post(() -> {
+                    if (isDestroyed() || loading || largeFileView != null) {
+                        return;
+                    }
+                    Content content = codeEditor.getText();
+                    int lastLine = content.getLineCount() - 1;
+                    content.replace(0, 0, lastLine, content.getColumnCount(lastLine), text);
+                    Toast.makeText(this, "Revision restored, save to keep it", Toast.LENGTH_SHORT).show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                mainHandler.post(() -> Toast.makeText(this, "Restore Failed: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    // ==================== AUTOSAVE ====================
+
+    private void attachJournal(String documentKey) {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new AutosaveJournal(new File(getFilesDir(), "journal"), documentKey, mainHandler,
+                this::autosave);
+    }
+
+    private void recordInJournal(ContentChangeEvent event) {
+        int index = event.getChangeStart().index;
+        switch (event.getAction()) {
+            case ContentChangeEvent.ACTION_INSERT:
+                journal.recordInsert(index, event.getChangedText());
+                break;
+            case ContentChangeEvent.ACTION_DELETE:
+                journal.recordDelete(index, event.getChangedText().length());
+                break;
+            case ContentChangeEvent.ACTION_SET_NEW_TEXT:
+                journal.recordReplace(event.getChangedText());
+                break;
+        }
+    }
+
+    /**
+     * Writes the document to its file once the journal has grown enough
+     */
+    private void autosave() {
+        if (loading || largeFileView != null || !documentModified) {
+            return;
+        }
+        if (lossyDecode || documentFormat == unencodableFormat) {
+            // Needs the user's decision; the journal keeps the edits until then
+            return;
+        }
+        if (currentFile != null) {
+            saveContentToFile(currentFile, true);
+        } else if (currentFileUri != null) {
+            saveContentToUri(currentFileUri, true);
+        }
+    }
+
+    /**
+     * The previous session's edits only apply to the document exactly as loaded, so nothing
+     * may be typed until the user has decided about them.
+     */
+    private void holdEditsForRecovery() {
+        if (journal.hasRecoverableChanges()) {
+            codeEditor.setEditable(false);
+        }
+    }
+
+    /**
+     * @param loadedLength length of the document as read from the file
+     */
+    private void offerRecovery(int loadedLength) {
+        new AlertDialog.Builder(this)
+                .setTitle("Recover Changes")
+                .setMessage("This file has unsaved changes from a previous session. Restore them?")
+                .setPositiveButton("Restore", (dialog, which) -> replayJournal(loadedLength))
+                .setNegativeButton("Discard", (dialog, which) -> {
+                    journal.discard();
+                    journal.start(codeEditor.getText().length());
+                    codeEditor.setEditable(true);
+                })
+                .setCancelable(false)
+                .show();
+    }
+
+    private void replayJournal(int loadedLength) {
+        Content content = codeEditor.getText();
+        suppressChangeTracking = true;
         try {
-            ContentResolver resolver = getContentResolver();
-            OutputStreamWriter writer = new OutputStreamWriter(
-                    resolver.openOutputStream(uri), StandardCharsets.UTF_8);
-            String content = codeEditor.getText().toString();
-            writer.write(content);
-            writer.flush();
-            writer.close();
-
-            Toast.makeText(this, "File Saved", Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
-        } catch (IOException e) {
+            journal.replay(loadedLength, new AutosaveJournal.Replayer() {
+                @Override
+                public void insert(int index, String text) {
+                    CharPosition position = content.getIndexer().getCharPosition(index);
+                    content.insert(position.line, position.column, text);
+                }
+
+                @Override
+                public void delete(int index, int length) {
+                    CharPosition start = content.getIndexer().getCharPosition(index);
+                    CharPosition end = content.getIndexer().getCharPosition(index + length);
+                    content.delete(start.line, start.column, end.line, end.column);
+                }
+
+                @Override
+                public void replace(String text) {
+                    int lastLine = content.getLineCount() - 1;
+                    content.replace(0, 0, lastLine, content.getColumnCount(lastLine), text);
+                }
+            });
+            documentModified = true;
+            Toast.makeText(this, "Changes restored", Toast.LENGTH_SHORT).show();
+        } catch (IOException | IndexOutOfBoundsException e) {
+            // The file changed underneath the journal; the edits can never apply, so drop them
             e.printStackTrace();
-            Toast.makeText(this, "Save Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            journal.discard();
+            Toast.makeText(this, "Recovery Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        } finally {
+            suppressChangeTracking = false;
         }
+        journal.start(content.length());
+        codeEditor.setEditable(true);
     }
 
     private void loadContentFromFile(File file) {
-        try {
-            FileInputStream fis = new FileInputStream(file);
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(fis, StandardCharsets.UTF_8));
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+        exitLargeFileMode();
+        attachJournal(file.getAbsolutePath());
+        holdEditsForRecovery();
+        loading = true;
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.OPEN);
+        documentLoader.load(() -> {
+            SaveEngine.recover(file);
+            return new FileInputStream(file);
+        }, file.length(),
+                new EditorLoadCallback("File Loaded: " + file.getName(), span));
+
+        // Update title or path display if needed
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(file.getName());
+        }
+    }
+
+    private void loadContentFromUri(Uri uri) {
+        ContentResolver resolver = getContentResolver();
+        exitLargeFileMode();
+        attachJournal(uri.toString());
+        holdEditsForRecovery();
+        loading = true;
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.OPEN);
+        documentLoader.load(() -> {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) {
+                throw new IOException("Cannot open " + uri);
             }
-            reader.close();
-            fis.close();
+            return in;
+        }, queryUriSize(uri), new EditorLoadCallback("File Loaded", span));
+    }
 
-            codeEditor.setText(content.toString());
+    private long queryUriSize(Uri uri) {
+        try (Cursor cursor = getContentResolver().query(uri,
+                new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
 
-            // Update title or path display if needed
-            if (getSupportActionBar() != null) {
-                getSupportActionBar().setTitle(file.getName());
+    private void openUri(Uri uri) {
+        if (queryUriSize(uri) > getLargeFileThreshold()) {
+            openLargeFileFromUri(uri);
+        } else {
+            loadContentFromUri(uri);
+        }
+    }
+
+    private long getLargeFileThreshold() {
+        return getIntent().getLongExtra(EXTRA_LARGE_FILE_THRESHOLD, DEFAULT_LARGE_FILE_THRESHOLD);
+    }
+
+    // ==================== LARGE FILE MODE ====================
+
+    private void openLargeFile(File file) {
+        openLargeFile(() -> new FileInputStream(file).getChannel(), file.getName(), null);
+    }
+
+    private void openLargeFileFromUri(Uri uri) {
+        ContentResolver resolver = getContentResolver();
+        // Providers backed by a pipe (cloud documents) report a size but cannot be mapped;
+        // those are streamed into the editor instead
+        openLargeFile(() -> {
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+            if (pfd == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            // The stream owns the descriptor from here on and closes it with the channel
+            return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
+        }, uri.getLastPathSegment(), () -> loadContentFromUri(uri));
+    }
+
+    private interface ChannelSource {
+        FileChannel open() throws IOException;
+    }
+
+    /**
+     * Maps the file and pages a window of lines into the editor. The editor is read-only in
+     * this mode and the window follows the scroll position.
+     *
+     * @param fallback run instead if the file cannot be mapped, null to only report the error
+     */
+    private void openLargeFile(ChannelSource source, String name, Runnable fallback) {
+        exitLargeFileMode();
+        // Nothing to journal, the view is read-only
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        loading = true;
+        codeEditor.setEditable(false);
+        codeEditor.setWordwrap(false);
+        codeEditor.setText("");
+        loadProgress.setIndeterminate(true);
+        loadProgress.setVisibility(View.VISIBLE);
+
+        EditorMetrics.Span span = metrics.beginSpan(EditorMetrics.OPEN);
+        ioExecutor.execute(() -> {
+            try {
+                LargeFileView view = LargeFileView.open(source.open());
+                String firstWindow = view.getLines(0, LARGE_FILE_WINDOW_LINES);
+                mainHandler.post(() -> {
+                    if (isDestroyed()) {
+                        span.cancel();
+                        closeQuietly(view);
+                        return;
+                    }
+                    loading = false;
+                    largeFileView = view;
+                    loadProgress.setVisibility(View.GONE);
+                    largeFileStatus.setVisibility(View.VISIBLE);
+                    showLargeFileWindow(0, firstWindow, 0);
+                    // The first window is all there is to load
+                    span.mark(EditorMetrics.OPEN_FIRST_CHUNK);
+                    span.end();
+                    Toast.makeText(this, "Opened read-only: " + name, Toast.LENGTH_SHORT).show();
+                });
+            } catch (IOException | RuntimeException e) {
+                mainHandler.post(() -> {
+                    span.cancel();
+                    loading = false;
+                    loadProgress.setVisibility(View.GONE);
+                    codeEditor.setEditable(true);
+                    codeEditor.setWordwrap(true);
+                    e.printStackTrace();
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (fallback != null) {
+                        fallback.run();
+                    } else {
+                        Toast.makeText(this, "Open Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
             }
+        });
+    }
+
+    private void exitLargeFileMode() {
+        if (largeFileView == null) {
+            return;
+        }
+        closeQuietly(largeFileView);
+        largeFileView = null;
+        pageGeneration++;
+        largeFileStatus.setVisibility(View.GONE);
+        codeEditor.setEditable(true);
+        codeEditor.setWordwrap(true);
+    }
+
+    private void onLargeFileScrolled() {
+        if (largeFileView == null) {
+            return;
+        }
+        int firstVisible = codeEditor.getFirstVisibleLine();
+        int lastVisible = codeEditor.getLastVisibleLine();
+        int windowLines = codeEditor.getText().getLineCount();
+
+        boolean nearTop = firstVisible < LARGE_FILE_PAGE_MARGIN && windowStartLine > 0;
+        boolean nearBottom = lastVisible > windowLines - LARGE_FILE_PAGE_MARGIN
+                && windowStartLine + windowLines < largeFileView.getLineCount();
+        if (!nearTop && !nearBottom) {
+            return;
+        }
+
+        // Re-center the window on what is currently on screen
+        int topLine = windowStartLine + firstVisible;
+        int newStart = Math.max(0, Math.min(topLine - LARGE_FILE_WINDOW_LINES / 2,
+                largeFileView.getLineCount() - LARGE_FILE_WINDOW_LINES));
+        if (newStart == windowStartLine) {
+            return;
+        }
+
+        LargeFileView view = largeFileView;
+        int generation = ++pageGeneration;
+        ioExecutor.execute(() -> {
+            String text = view.getLines(newStart, LARGE_FILE_WINDOW_LINES);
+            mainHandler.post(() -> {
+                if (generation == pageGeneration && largeFileView == view) {
+                    showLargeFileWindow(newStart, text, topLine - newStart);
+                }
+            });
+        });
+    }
+
+    private void showLargeFileWindow(int startLine, String text, int scrollToLine) {
+        windowStartLine = startLine;
+        codeEditor.setText(text);
+
+        // Keep the same absolute line at the top of the screen after swapping the window
+        int targetY = scrollToLine * codeEditor.getRowHeight();
+        codeEditor.getScroller().forceFinished(true);
+        codeEditor.getScroller().startScroll(0, 0, 0, targetY, 0);
+        codeEditor.invalidate();
+
+        int endLine = startLine + codeEditor.getText().getLineCount();
+        largeFileStatus.setText(String.format(Locale.getDefault(),
+                "Read-only: lines %,d–%,d of %,d", startLine + 1, endLine, largeFileView.getLineCount()));
+    }
 
-            Toast.makeText(this, "File Loaded: " + file.getName(), Toast.LENGTH_SHORT).show();
+    private void closeQuietly(LargeFileView view) {
+        try {
+            view.close();
         } catch (IOException e) {
             e.printStackTrace();
-            Toast.makeText(this, "Open Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
 
-    private void loadContentFromUri(Uri uri) {
-        try {
-            ContentResolver resolver = getContentResolver();
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(resolver.openInputStream(uri), StandardCharsets.UTF_8));
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+    private static LineSeparator toLineSeparator(String separator) {
+        if (TextFormat.CRLF.equals(separator)) {
+            return LineSeparator.CRLF;
+        } else if (TextFormat.CR.equals(separator)) {
+            return LineSeparator.CR;
+        }
+        return LineSeparator.LF;
+    }
+
+    /**
+     * Feeds chunks from {@link DocumentLoader} into the editor. The first chunk replaces the
+     * content so the top of the file is editable immediately; the rest is appended at the end.
+     */
+    private class EditorLoadCallback implements DocumentLoader.Callback {
+        private final String doneMessage;
+        private final EditorMetrics.Span span;
+        // Chars read from the file, which edits made while loading do not change
+        private int loadedLength;
+
+        EditorLoadCallback(String doneMessage, EditorMetrics.Span span) {
+            this.doneMessage = doneMessage;
+            this.span = span;
+        }
+
+        @Override
+        public void onFirstChunk(String text, TextFormat format) {
+            documentFormat = format;
+            lossyDecode = false;
+            loadedLength = text.length();
+            codeEditor.setLineSeparator(toLineSeparator(format.getLineSeparator()));
+
+            suppressChangeTracking = true;
+            codeEditor.setText(text);
+            suppressChangeTracking = false;
+            documentModified = false;
+
+            // Loading is not something the user should be able to undo
+            codeEditor.getText().setUndoEnabled(false);
+            loadProgress.setProgress(0);
+            loadProgress.setVisibility(View.VISIBLE);
+            span.mark(EditorMetrics.OPEN_FIRST_CHUNK);
+        }
+
+        @Override
+        public void onChunk(String text) {
+            loadedLength += text.length();
+            Content content = codeEditor.getText();
+            int lastLine = content.getLineCount() - 1;
+            suppressChangeTracking = true;
+            content.insert(lastLine, content.getColumnCount(lastLine), text);
+            suppressChangeTracking = false;
+        }
+
+        @Override
+        public void onProgress(long bytesRead, long totalBytes) {
+            if (totalBytes > 0) {
+                loadProgress.setIndeterminate(false);
+                loadProgress.setProgress((int) Math.min(1000, bytesRead * 1000 / totalBytes));
+            } else {
+                loadProgress.setIndeterminate(true);
             }
-            reader.close();
+        }
 
-            codeEditor.setText(content.toString());
+        @Override
+        public void onComplete(boolean lossy) {
+            span.end();
+            loading = false;
+            lossyDecode = lossy;
+            codeEditor.getText().setUndoEnabled(true);
+            loadProgress.setVisibility(View.GONE);
 
-            if (tabLayout.getSelectedTabPosition() == 1) {
-                markwon.setMarkdown(markdownPreview, content.toString());
+            if (tabLayout.getSelectedTabPosition() != TAB_CODE) {
+                updatePreview();
             }
 
-            Toast.makeText(this, "File Loaded", Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
+            if (lossy) {
+                Toast.makeText(TextEditorActivity.this, doneMessage + ", but some bytes are not valid " +
+                        documentFormat.getCharset().name(), Toast.LENGTH_LONG).show();
+            } else {
+                Toast.makeText(TextEditorActivity.this, doneMessage, Toast.LENGTH_SHORT).show();
+            }
+
+            if (journal != null) {
+                if (journal.hasRecoverableChanges()) {
+                    offerRecovery(loadedLength);
+                } else {
+                    journal.start(loadedLength);
+                }
+            }
+        }
+
+        @Override
+        public void onError(IOException e) {
             e.printStackTrace();
-            Toast.makeText(this, "Open Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            span.cancel();
+            loading = false;
+            codeEditor.getText().setUndoEnabled(true);
+            // Nothing was loaded to recover onto; the journal is offered again next time
+            codeEditor.setEditable(true);
+            loadProgress.setVisibility(View.GONE);
+            Toast.makeText(TextEditorActivity.this, "Open Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        documentLoader.cancel();
+        ioExecutor.shutdownNow();
+        cancelLivePreview();
+        mainHandler.removeCallbacks(overlayRefresh);
+        previewRenderer.shutdown();
+        // Pending saves still complete, e.g. after "Save" in the close dialog
+        saveEngine.shutdown();
+        if (journal != null) {
+            // Unsaved edits stay in the journal and are offered again next time
+            journal.close();
+        }
+        exitLargeFileMode();
         if (codeEditor != null) {
             codeEditor.release();
         }
@@ -0,0 +1,167 @@
+package com.shan.texteditor;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level properties of a text file (encoding, byte order mark and line terminator),
+ * detected once when the file is opened so that saving writes the same format back.
+ */
+public class TextFormat {
+
+    public static final String LF = "\n";
+    public static final String CRLF = "\r\n";
+    public static final String CR = "\r";
+
+    private static final byte[] NO_BOM = new byte[0];
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+    private static final byte[] UTF16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+
+    /** Format used for documents that did not come from a file */
+    public static final TextFormat DEFAULT = new TextFormat(StandardCharsets.UTF_8, NO_BOM, LF);
+
+    private final Charset charset;
+    private final byte[] bom;
+    private final String lineSeparator;
+
+    private TextFormat(Charset charset, byte[] bom, String lineSeparator) {
+        this.charset = charset;
+        this.bom = bom;
+        this.lineSeparator = lineSeparator;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Byte order mark to write before the content, empty if the file had none
+     */
+    public byte[] getBom() {
+        return bom.clone();
+    }
+
+    public int getBomLength() {
+        return bom.length;
+    }
+
+    /**
+     * Dominant line terminator of the file, used for lines the user adds
+     */
+    public String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    /**
+     * The same line terminator in UTF-8 without a BOM, for text this format cannot encode
+     */
+    public TextFormat toUtf8() {
+        return new TextFormat(StandardCharsets.UTF_8, NO_BOM, lineSeparator);
+    }
+
+    /**
+     * Detects the format from the first bytes of a file. Without a BOM, UTF-8 is assumed
+     * unless the sample is not valid UTF-8, in which case ISO-8859-1 is used because it maps
+     * every byte to a char and back unchanged.
+     */
+    public static TextFormat detect(byte[] head, int length) {
+        Charset charset;
+        byte[] bom;
+        if (startsWith(head, length, UTF8_BOM)) {
+            charset = StandardCharsets.UTF_8;
+            bom = UTF8_BOM;
+        } else if (startsWith(head, length, UTF16LE_BOM)) {
+            charset = StandardCharsets.UTF_16LE;
+            bom = UTF16LE_BOM;
+        } else if (startsWith(head, length, UTF16BE_BOM)) {
+            charset = StandardCharsets.UTF_16BE;
+            bom = UTF16BE_BOM;
+        } else {
+            charset = isValidUtf8(head, length) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+            bom = NO_BOM;
+        }
+        return new TextFormat(charset, bom, detectLineSeparator(head, bom.length, length, charset));
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidUtf8(byte[] data, int length) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(data, 0, length);
+        try {
+            // endOfInput is false: the sample may end in the middle of a sequence
+            CharBuffer out = CharBuffer.allocate(1024);
+            while (true) {
+                CoderResult result = decoder.decode(in, out, false);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isUnderflow()) {
+                    return true;
+                }
+                out.clear();
+            }
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static String detectLineSeparator(byte[] data, int offset, int length, Charset charset) {
+        // Terminators are single code units; in UTF-16 skip the zero half of each unit
+        int step = charset == StandardCharsets.UTF_16LE || charset == StandardCharsets.UTF_16BE ? 2 : 1;
+        int lowByte = charset == StandardCharsets.UTF_16BE ? 1 : 0;
+
+        int lf = 0;
+        int crlf = 0;
+        int cr = 0;
+        for (int i = offset + lowByte; i < length; i += step) {
+            if (step == 2 && !isAsciiUnit(data, i, lowByte, length)) {
+                continue;
+            }
+            byte b = data[i];
+            if (b == '\n') {
+                lf++;
+            } else if (b == '\r') {
+                int next = i + step;
+                if (next < length && data[next] == '\n'
+                        && (step == 1 || isAsciiUnit(data, next, lowByte, length))) {
+                    crlf++;
+                    i += step;
+                } else {
+                    cr++;
+                }
+            }
+        }
+
+        if (crlf > lf && crlf >= cr) {
+            return CRLF;
+        } else if (cr > lf && cr > crlf) {
+            return CR;
+        }
+        return LF;
+    }
+
+    private static boolean isAsciiUnit(byte[] data, int lowIndex, int lowByte, int length) {
+        int highIndex = lowByte == 0 ? lowIndex + 1 : lowIndex - 1;
+        return highIndex < length && data[highIndex] == 0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.shan.texteditor;
+
+import android.content.Context;
+
+import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver;
+
+/**
+ * Process-wide TextMate setup. The registries are singletons, so the asset resolver,
+ * theme and grammars only need to be registered and parsed once per process; later
+ * editors reuse the compiled grammar.
+ */
+public final class TextMateWarmup {
+
+    public static final String MARKDOWN_SCOPE = "text.html.markdown";
+
+    private static final Object LOCK = new Object();
+    private static volatile boolean initialized;
+
+    private TextMateWarmup() {
+    }
+
+    /**
+     * Starts initialisation on a background thread so the first editor does not pay for it.
+     * Safe to call repeatedly.
+     */
+    public static void prewarm(Context context) {
+        if (initialized) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            try {
+                ensureInitialized(appContext);
+            } catch (Exception e) {
+                // The editor retries and reports the error when it opens
+                e.printStackTrace();
+            }
+        }, "TextMateWarmup");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers assets, theme and grammars and compiles the markdown grammar, unless that
+     * already happened. Blocks while a prewarm is in progress.
+     */
+    public static void ensureInitialized(Context context) throws Exception {
+        if (initialized) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (initialized) {
+                return;
+            }
+            FileProviderRegistry.getInstance().addFileProvider(
+                    new AssetsFileResolver(context.getApplicationContext().getAssets()));
+            ThemeRegistry.getInstance().setTheme("default");
+            GrammarRegistry.getInstance().loadGrammars("textmate/languages.json");
+            // Compiles the grammar now instead of on the first highlight pass
+            GrammarRegistry.getInstance().findGrammar(MARKDOWN_SCOPE);
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.shan.texteditor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DocumentStatsTest {
+
+    private static DocumentStats statsOf(String text) {
+        DocumentStats stats = new DocumentStats();
+        stats.reset(DocumentWriterTest.lines(text), text.length());
+        return stats;
+    }
+
+    private static void assertSameCounts(DocumentStats expected, DocumentStats actual) {
+        assertEquals(expected.getLineCount(), actual.getLineCount());
+        assertEquals(expected.getCharacterCount(), actual.getCharacterCount());
+        assertEquals(expected.getWordCount(), actual.getWordCount());
+        assertEquals(expected.getHeadingCount(), actual.getHeadingCount());
+    }
+
+    @Test
+    public void countsWordsAndHeadings() {
+        DocumentStats stats = statsOf("# Title\nDon't stop, it's 2 words\n####### not a heading\n   ## Sub\n#tag\n");
+
+        assertEquals(6, stats.getLineCount());
+        assertEquals(11, stats.getWordCount());
+        assertEquals(2, stats.getHeadingCount());
+    }
+
+    @Test
+    public void readingTimeRoundsToWholeMinutes() {
+        assertEquals(0, statsOf("").getReadingMinutes());
+        assertEquals(1, statsOf("one").getReadingMinutes());
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("word ");
+        }
+        assertEquals(3, statsOf(text.toString()).getReadingMinutes());
+    }
+
+    @Test
+    public void insertMatchesAFullRecount() {
+        String before = "# One\nalpha beta\ngamma";
+        String after = "# One\nalpha new\n## Two\nwords here beta\ngamma";
+        DocumentStats stats = statsOf(before);
+
+        // "new\n## Two\nwords here " typed after "alpha " on line 1, ending on line 3
+        String inserted = "new\n## Two\nwords here ";
+        stats.onInsert(DocumentWriterTest.lines(after), 1, 3, inserted.length());
+
+        assertSameCounts(statsOf(after), stats);
+    }
+
+    @Test
+    public void deleteMatchesAFullRecount() {
+        String before = "# One\nalpha new\n## Two\nwords here beta\ngamma";
+        String after = "# One\nalpha beta\ngamma";
+        DocumentStats stats = statsOf(before);
+
+        // The inverse of the insert above: lines 1..3 merge back into line 1
+        String deleted = "new\n## Two\nwords here ";
+        stats.onDelete(DocumentWriterTest.lines(after), 1, 3, deleted.length());
+
+        assertSameCounts(statsOf(after), stats);
+    }
+
+    @Test
+    public void manyInsertedLinesGrowTheLineTable() {
+        StringBuilder text = new StringBuilder("start");
+        StringBuilder inserted = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            inserted.append("\n# heading ").append(i);
+        }
+        text.append(inserted);
+        DocumentStats stats = statsOf("start");
+
+        stats.onInsert(DocumentWriterTest.lines(text.toString()), 0, 1000, inserted.length());
+
+        assertSameCounts(statsOf(text.toString()), stats);
+        assertEquals(1000, stats.getHeadingCount());
+    }
+}
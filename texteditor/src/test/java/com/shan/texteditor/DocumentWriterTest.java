@@ -0,0 +1,110 @@
+package com.shan.texteditor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DocumentWriterTest {
+
+    /**
+     * Splits text the way the editor does: every line keeps its own terminator.
+     */
+    static DocumentWriter.Lines lines(String text) {
+        List<String> lines = new ArrayList<>();
+        List<String> separators = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                int end = c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+                lines.add(text.substring(start, i));
+                separators.add(text.substring(i, end));
+                start = end;
+                i = end - 1;
+            }
+        }
+        lines.add(text.substring(start));
+        separators.add("");
+        return new DocumentWriter.Lines() {
+            @Override
+            public int getLineCount() {
+                return lines.size();
+            }
+
+            @Override
+            public CharSequence getLine(int line) {
+                return lines.get(line);
+            }
+
+            @Override
+            public CharSequence getLineSeparator(int line) {
+                return separators.get(line);
+            }
+        };
+    }
+
+    private static byte[] write(String text, TextFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = DocumentWriter.write(lines(text), format, out);
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void mixedTerminatorsAreWrittenBack() throws Exception {
+        String text = "one\r\ntwo\nthree\rfour";
+
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), write(text, TextFormat.DEFAULT));
+    }
+
+    @Test
+    public void bomAndCharsetOfTheFormat() throws Exception {
+        byte[] head = {(byte) 0xFE, (byte) 0xFF, 0, 'a'};
+        TextFormat format = TextFormat.detect(head, head.length);
+        byte[] bytes = write("a\u00E9\n", format);
+
+        byte[] expected = {(byte) 0xFE, (byte) 0xFF, 0, 'a', 0, (byte) 0xE9, 0, '\n'};
+        assertArrayEquals(expected, bytes);
+    }
+
+    @Test
+    public void documentLargerThanTheBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("line ").append(i).append(" \u00FCber\n");
+        }
+
+        assertArrayEquals(text.toString().getBytes(StandardCharsets.UTF_8), write(text.toString(), TextFormat.DEFAULT));
+    }
+
+    @Test
+    public void surrogatePairIsEncoded() throws Exception {
+        String emoji = "\uD83D\uDE00";
+
+        assertArrayEquals(("x" + emoji).getBytes(StandardCharsets.UTF_8), write("x" + emoji, TextFormat.DEFAULT));
+    }
+
+    @Test(expected = UnmappableCharacterException.class)
+    public void unmappableCharacterFailsTheWrite() throws Exception {
+        byte[] latin1 = {'c', 'a', 'f', (byte) 0xE9, '\n'};
+        TextFormat format = TextFormat.detect(latin1, latin1.length);
+
+        write("price: \u20AC5", format);
+    }
+
+    @Test(expected = UnmappableCharacterException.class)
+    public void checkEncodableFailsLikeWrite() throws Exception {
+        byte[] latin1 = {(byte) 0xE9, ' '};
+        TextFormat format = TextFormat.detect(latin1, latin1.length);
+
+        DocumentWriter.checkEncodable(lines("ok\n\u20AC"), format);
+    }
+}
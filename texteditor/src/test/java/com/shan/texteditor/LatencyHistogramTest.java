@@ -0,0 +1,90 @@
+package com.shan.texteditor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getMeanMicros());
+        assertEquals(5, histogram.getPercentileMicros(50));
+        assertEquals(9, histogram.getPercentileMicros(90));
+        assertEquals(10, histogram.getPercentileMicros(100));
+        assertEquals(10, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(100000 * percentile / 100);
+            long reported = histogram.getPercentileMicros(percentile);
+            assertTrue(percentile + ": " + reported, Math.abs(reported - exact) <= exact / 16);
+        }
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void bucketsCoverEveryValueWithoutGaps() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " below its bucket", LatencyHistogram.lowerBound(bucket) <= value);
+            assertTrue(value + " above its bucket", LatencyHistogram.upperBound(bucket) >= value);
+        }
+        for (int bucket = 1; bucket < LatencyHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            assertEquals(LatencyHistogram.upperBound(bucket - 1) + 1, LatencyHistogram.lowerBound(bucket));
+        }
+    }
+
+    @Test
+    public void nanosAreConvertedAndNegativeClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(2500);
+        histogram.recordNanos(-10);
+
+        assertEquals(2, histogram.getMaxMicros());
+        assertEquals(2, histogram.getCount());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+}
@@ -0,0 +1,72 @@
+package com.shan.texteditor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MarkdownBlocksTest {
+
+    @Test
+    public void blankLinesSeparateBlocks() {
+        List<String> blocks = MarkdownBlocks.split("# Title\n\nFirst\nparagraph\n\n\nSecond\n").getBlocks();
+
+        assertEquals(Arrays.asList("# Title\n", "First\nparagraph\n", "Second\n"), blocks);
+    }
+
+    @Test
+    public void indentedLineContinuesTheBlock() {
+        List<String> blocks = MarkdownBlocks.split("- item\n\n  more of the item\n\nnext\n").getBlocks();
+
+        assertEquals(Arrays.asList("- item\n\n  more of the item\n", "next\n"), blocks);
+    }
+
+    @Test
+    public void fencedCodeKeepsItsBlankLines() {
+        String markdown = "```\ncode\n\n\nmore code\n```\n\nafter\n";
+        List<String> blocks = MarkdownBlocks.split(markdown).getBlocks();
+
+        assertEquals(Arrays.asList("```\ncode\n\n\nmore code\n```\n", "after\n"), blocks);
+    }
+
+    @Test
+    public void tildeFenceIsOnlyClosedByTildes() {
+        List<String> blocks = MarkdownBlocks.split("~~~\n```\n\n~~~\n\nafter").getBlocks();
+
+        assertEquals(Arrays.asList("~~~\n```\n\n~~~\n", "after\n"), blocks);
+    }
+
+    @Test
+    public void crlfIsNormalized() {
+        List<String> blocks = MarkdownBlocks.split("one\r\n\r\ntwo\r\n").getBlocks();
+
+        assertEquals(Arrays.asList("one\n", "two\n"), blocks);
+    }
+
+    @Test
+    public void referenceDefinitionsAreCollected() {
+        MarkdownBlocks split = MarkdownBlocks.split("See [docs][1].\n\n[1]: https://example.com\n   [x]: /x\n");
+
+        assertEquals("[1]: https://example.com\n   [x]: /x\n", split.getReferences());
+        assertEquals(2, split.getBlocks().size());
+    }
+
+    @Test
+    public void emptyDocumentHasNoBlocks() {
+        MarkdownBlocks split = MarkdownBlocks.split("\n\n");
+
+        assertTrue(split.getBlocks().isEmpty());
+        assertEquals("", split.getReferences());
+    }
+
+    @Test
+    public void hashIsFnv1a() {
+        // Reference values of 64-bit FNV-1a
+        assertEquals(0xcbf29ce484222325L, MarkdownBlocks.hash(""));
+        assertEquals(0xaf63dc4c8601ec8cL, MarkdownBlocks.hash("a"));
+        assertEquals(0x85944171f73967e8L, MarkdownBlocks.hash("foobar"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.shan.texteditor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextFormatTest {
+
+    private static TextFormat detect(byte[] bytes) {
+        return TextFormat.detect(bytes, bytes.length);
+    }
+
+    @Test
+    public void plainAsciiIsUtf8WithLf() {
+        TextFormat format = detect("one\ntwo\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(StandardCharsets.UTF_8, format.getCharset());
+        assertEquals(0, format.getBomLength());
+        assertEquals(TextFormat.LF, format.getLineSeparator());
+    }
+
+    @Test
+    public void utf8Bom() {
+        byte[] bytes = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a', '\r', '\n', 'b', '\r', '\n'};
+        TextFormat format = detect(bytes);
+
+        assertEquals(StandardCharsets.UTF_8, format.getCharset());
+        assertEquals(3, format.getBomLength());
+        assertEquals(TextFormat.CRLF, format.getLineSeparator());
+    }
+
+    @Test
+    public void utf16LittleEndianLineSeparators() {
+        byte[] text = "a\r\nb\r\nc\n".getBytes(StandardCharsets.UTF_16LE);
+        byte[] bytes = new byte[text.length + 2];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xFE;
+        System.arraycopy(text, 0, bytes, 2, text.length);
+        TextFormat format = detect(bytes);
+
+        assertEquals(StandardCharsets.UTF_16LE, format.getCharset());
+        assertEquals(2, format.getBomLength());
+        assertEquals(TextFormat.CRLF, format.getLineSeparator());
+    }
+
+    @Test
+    public void utf16BigEndianIgnoresNonAsciiUnits() {
+        // U+0A0D has a CR in its low byte but is not a line terminator
+        byte[] text = "\u0A0D\u0A0Da\rb\r".getBytes(StandardCharsets.UTF_16BE);
+        byte[] bytes = new byte[text.length + 2];
+        bytes[0] = (byte) 0xFE;
+        bytes[1] = (byte) 0xFF;
+        System.arraycopy(text, 0, bytes, 2, text.length);
+        TextFormat format = detect(bytes);
+
+        assertEquals(StandardCharsets.UTF_16BE, format.getCharset());
+        assertEquals(TextFormat.CR, format.getLineSeparator());
+    }
+
+    @Test
+    public void invalidUtf8FallsBackToLatin1() {
+        byte[] bytes = {'c', 'a', 'f', (byte) 0xE9, '\n'};
+
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes).getCharset());
+    }
+
+    @Test
+    public void sequenceCutAtTheEndOfTheSampleIsStillUtf8() {
+        byte[] euro = "\u20AC".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = {'x', euro[0], euro[1]};
+
+        assertEquals(StandardCharsets.UTF_8, detect(bytes).getCharset());
+    }
+
+    @Test
+    public void onlyTheGivenLengthIsExamined() {
+        byte[] bytes = "a\nb\n\r\n\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(TextFormat.LF, TextFormat.detect(bytes, 4).getLineSeparator());
+        assertEquals(TextFormat.CRLF, detect(bytes).getLineSeparator());
+    }
+
+    @Test
+    public void toUtf8KeepsTheLineSeparatorAndDropsTheBom() {
+        byte[] bytes = {(byte) 0xFF, (byte) 0xFE, 'a', 0, '\r', 0, '\n', 0};
+        TextFormat utf8 = detect(bytes).toUtf8();
+
+        assertEquals(StandardCharsets.UTF_8, utf8.getCharset());
+        assertEquals(0, utf8.getBomLength());
+        assertEquals(TextFormat.CRLF, utf8.getLineSeparator());
+    }
+}